@@ -0,0 +1,77 @@
+package com.example.testproject.benchmark;
+
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentResponseDto;
+import com.example.testproject.statistics.Statistics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+// generated with fixed seed, so every run and every commit measures the same data
+public final class BenchmarkData {
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] AGENCIES = {"agency1", "agency2", "agency3"};
+    private static final String[] USERS = {"user1", "user2", "user3", "user4", "user5"};
+
+    private BenchmarkData() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        return new ObjectMapper().findAndRegisterModules();
+    }
+
+    public static Validator validator() {
+        return Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    public static Statistics statistics() {
+        return new Statistics(new SimpleMeterRegistry());
+    }
+
+    // about four of five patients have one client, the rest have two, like in old system test data
+    public static List<ClientDto> clients(int count, double invalidShare) {
+        Random random = new Random(count);
+        List<ClientDto> clients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int patient = random.nextInt(5) == 0 && i > 0 ? i - 1 : i;
+            boolean isInvalid = random.nextDouble() < invalidShare;
+            clients.add(ClientDto.builder()
+                    .guid(new UUID(random.nextLong(), random.nextLong()))
+                    .agency(AGENCIES[random.nextInt(AGENCIES.length)])
+                    .firstName(isInvalid ? "" : "first" + patient)
+                    .lastName("last" + patient)
+                    .status(random.nextInt(10) == 0 ? "INACTIVE" : "ACTIVE")
+                    .dob(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20_000)))
+                    .createdDateTime(BASE_TIME.plusMinutes(i))
+                    .build());
+        }
+        return clients;
+    }
+
+    public static List<CommentResponseDto> comments(int count, double invalidShare) {
+        Random random = new Random(count);
+        List<CommentResponseDto> comments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean isInvalid = random.nextDouble() < invalidShare;
+            LocalDateTime createdAt = BASE_TIME.plusMinutes(random.nextInt(500_000));
+            comments.add(CommentResponseDto.builder()
+                    .comments(isInvalid ? " " : "Comment " + i + " " + "text ".repeat(random.nextInt(40)))
+                    .guid(new UUID(random.nextLong(), random.nextLong()))
+                    .clientGuid(new UUID(random.nextLong(), random.nextLong()))
+                    .datetime(createdAt)
+                    .loggedUser(USERS[random.nextInt(USERS.length)])
+                    .createdDateTime(createdAt)
+                    .modifiedDateTime(random.nextBoolean() ? createdAt.plusHours(1) : null)
+                    .build());
+        }
+        return comments;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.testproject.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.io.File;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+
+// embedded postgres unless an existing database is given, with the shared schema applied
+public record BenchmarkDatabase(String jdbcUrl, String user, String password, EmbeddedPostgres embedded)
+        implements AutoCloseable {
+    // relative to new-system-benchmarks, where benchmarks are started from
+    public static final String DEFAULT_SCHEMA = System.getProperty("benchmark.schema",
+            "../old-system/src/main/resources/db_init/schema.sql");
+
+    public static BenchmarkDatabase start(String jdbcUrl, String user, String password) throws Exception {
+        if (jdbcUrl != null) {
+            return new BenchmarkDatabase(jdbcUrl, user, password, null);
+        }
+        EmbeddedPostgres embedded = EmbeddedPostgres.builder().start();
+        return new BenchmarkDatabase(embedded.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                "postgres", "postgres", embedded);
+    }
+
+    // schema of the shared database truncates every table, so every start begins with empty tables
+    public void applySchema(File schema) throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(jdbcUrl, user, password);
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource(schema));
+        }
+    }
+
+    // new system connects to this database with them
+    public Map<String, Object> dataSourceProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("SPRING_DATASOURCE_URL", jdbcUrl);
+        properties.put("SPRING_DATASOURCE_USERNAME", user);
+        properties.put("SPRING_DATASOURCE_PASSWORD", password);
+        return properties;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.testproject.benchmark;
+
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// old system payloads: the whole client list and comments of one batch of clients
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonDeserializationBenchmark {
+    @Param({"200", "2000", "20000"})
+    private int size;
+
+    private ObjectReader clientReader;
+    private ObjectReader commentReader;
+    private byte[] clientPayload;
+    private byte[] commentPayload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        clientReader = objectMapper.readerFor(ClientDto[].class);
+        commentReader = objectMapper.readerFor(CommentResponseDto[].class);
+
+        clientPayload = objectMapper.writeValueAsBytes(BenchmarkData.clients(size, 0));
+        commentPayload = objectMapper.writeValueAsBytes(BenchmarkData.comments(size, 0));
+    }
+
+    @Benchmark
+    public ClientDto[] readClients() throws IOException {
+        return clientReader.readValue(clientPayload);
+    }
+
+    @Benchmark
+    public CommentResponseDto[] readComments() throws IOException {
+        return commentReader.readValue(commentPayload);
+    }
+}
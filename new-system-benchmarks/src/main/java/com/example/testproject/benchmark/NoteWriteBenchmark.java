@@ -0,0 +1,128 @@
+package com.example.testproject.benchmark;
+
+import com.example.testproject.TestProjectApplication;
+import com.example.testproject.entity.Note;
+import com.example.testproject.entity.Patient;
+import com.example.testproject.entity.User;
+import com.example.testproject.repository.NoteJdbcRepository;
+import com.example.testproject.service.NoteService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// notes per second of both SYNC_WRITE_PATH values against a real postgres,
+// allocation per note is gc.alloc.rate.norm of the gc profiler, which BenchmarkRunner always adds
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteWriteBenchmark {
+    private static final int NOTE_COUNT = 500;
+
+    @Param({"jdbc", "jpa"})
+    public String writePath;
+
+    // 'created' writes notes of new comments like a first sync, 'updated' rewrites stored notes like a steady one
+    @Param({"created", "updated"})
+    public String change;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private NoteService noteService;
+    private JdbcTemplate jdbcTemplate;
+    private User user;
+    private Patient patient;
+    private List<Note> storedNotes;
+    private long version;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start(System.getProperty("benchmark.jdbc.url"),
+                System.getProperty("benchmark.jdbc.user"), System.getProperty("benchmark.jdbc.password"));
+        database.applySchema(new File(BenchmarkDatabase.DEFAULT_SCHEMA));
+
+        Map<String, Object> properties = database.dataSourceProperties();
+        properties.put("SYNC_WRITE_PATH", writePath);
+        properties.put("logging.level.root", "WARN");
+        context = new SpringApplicationBuilder(TestProjectApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .run();
+        noteService = context.getBean(NoteService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        user = new User();
+        user.setLogin("benchmark");
+        user.setId(jdbcTemplate.queryForObject("INSERT INTO company_user (login) VALUES ('benchmark') RETURNING id",
+                Long.class));
+        patient = Patient.builder()
+                .id(jdbcTemplate.queryForObject("""
+                        INSERT INTO patient_profile (first_name, last_name, status_id)
+                        VALUES ('first', 'last', 200) RETURNING id
+                        """, Long.class))
+                .build();
+    }
+
+    // same table size for every iteration, stored notes get their database ids like loaded ones
+    @Setup(Level.Iteration)
+    public void resetNotes() {
+        jdbcTemplate.update("TRUNCATE TABLE patient_note");
+        storedNotes = newNotes();
+        if (change.equals("updated")) {
+            context.getBean(NoteJdbcRepository.class).upsertNotes(storedNotes);
+            Map<UUID, Long> idsByCommentId = new HashMap<>();
+            jdbcTemplate.query("SELECT id, comment_id FROM patient_note", (RowCallbackHandler) rs ->
+                    idsByCommentId.put(rs.getObject("comment_id", UUID.class), rs.getLong("id")));
+            storedNotes.forEach(note -> note.setId(idsByCommentId.get(note.getCommentId())));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public void writeNotes() {
+        if (change.equals("created")) {
+            noteService.saveNotes(newNotes());
+            return;
+        }
+
+        ++version;
+        LocalDateTime modifiedAt = LocalDateTime.now();
+        storedNotes.forEach(note -> {
+            note.setNote("Updated note " + version);
+            note.setModifiedAt(modifiedAt);
+            note.setModifiedBy(user);
+        });
+        noteService.saveNotes(storedNotes);
+    }
+
+    private List<Note> newNotes() {
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            notes.add(Note.builder()
+                    .note("Note " + i)
+                    .createdAt(createdAt)
+                    .createdBy(user)
+                    .commentId(UUID.randomUUID())
+                    .patient(patient)
+                    .build());
+        }
+        return notes;
+    }
+}
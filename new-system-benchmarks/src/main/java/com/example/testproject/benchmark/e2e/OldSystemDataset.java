@@ -0,0 +1,98 @@
+package com.example.testproject.benchmark.e2e;
+
+import com.example.testproject.benchmark.BenchmarkData;
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentResponseDto;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+// clients and their comments served by the stub, changed only between synchronization runs
+public class OldSystemDataset {
+    private static final String[] USERS = {"user1", "user2", "user3", "user4", "user5"};
+
+    private final List<ClientDto> clients;
+    private final Map<UUID, List<CommentResponseDto>> commentsByClient = new HashMap<>();
+    private final Random random;
+
+    // sorted by change time and id like the changes feed of old system
+    private List<CommentResponseDto> commentsByChange;
+
+    public OldSystemDataset(int clientCount, int commentsPerClient, long seed) {
+        random = new Random(seed);
+        clients = BenchmarkData.clients(clientCount, 0);
+
+        // old system returns comments of the last year only
+        LocalDateTime now = LocalDateTime.now();
+        for (ClientDto client : clients) {
+            List<CommentResponseDto> comments = new ArrayList<>(commentsPerClient);
+            for (int i = 0; i < commentsPerClient; i++) {
+                LocalDateTime createdAt = now.minusMinutes(1 + random.nextInt(300 * 24 * 60));
+                comments.add(CommentResponseDto.builder()
+                        .comments("Comment " + i + " " + "text ".repeat(random.nextInt(40)))
+                        .guid(new UUID(random.nextLong(), random.nextLong()))
+                        .clientGuid(client.guid())
+                        .datetime(createdAt)
+                        .loggedUser(USERS[random.nextInt(USERS.length)])
+                        .createdDateTime(createdAt)
+                        .build());
+            }
+            commentsByClient.put(client.guid(), comments);
+        }
+        sortByChange();
+    }
+
+    public List<ClientDto> getClients() {
+        return clients;
+    }
+
+    public List<CommentResponseDto> getComments(UUID clientGuid) {
+        return commentsByClient.getOrDefault(clientGuid, List.of());
+    }
+
+    public List<CommentResponseDto> getCommentsByChange() {
+        return commentsByChange;
+    }
+
+    public int getCommentCount() {
+        return commentsByChange.size();
+    }
+
+    // edits a share of comments now, so a steady state run has something to update
+    public int modifyComments(double share) {
+        LocalDateTime now = LocalDateTime.now();
+        int modified = 0;
+        for (List<CommentResponseDto> comments : commentsByClient.values()) {
+            for (int i = 0; i < comments.size(); i++) {
+                if (random.nextDouble() < share) {
+                    CommentResponseDto comment = comments.get(i);
+                    comments.set(i, CommentResponseDto.builder()
+                            .comments(comment.comments() + " edited")
+                            .guid(comment.guid())
+                            .clientGuid(comment.clientGuid())
+                            .datetime(comment.datetime())
+                            .loggedUser(USERS[random.nextInt(USERS.length)])
+                            .createdDateTime(comment.createdDateTime())
+                            .modifiedDateTime(now)
+                            .build());
+                    ++modified;
+                }
+            }
+        }
+        sortByChange();
+        return modified;
+    }
+
+    public static LocalDateTime changedAt(CommentResponseDto comment) {
+        return comment.modifiedDateTime() != null && comment.modifiedDateTime().isAfter(comment.createdDateTime())
+                ? comment.modifiedDateTime()
+                : comment.createdDateTime();
+    }
+
+    private void sortByChange() {
+        commentsByChange = commentsByClient.values().stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(OldSystemDataset::changedAt).thenComparing(CommentResponseDto::guid))
+                .toList();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.testproject.benchmark.e2e;
+
+import com.example.testproject.dto.ClientCommentsDto;
+import com.example.testproject.dto.CommentChangesDto;
+import com.example.testproject.dto.CommentResponseDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+// in-process old system: same endpoints and payloads, data from the dataset, fixed latency per request
+@Slf4j
+public class OldSystemStub implements AutoCloseable {
+    private final OldSystemDataset dataset;
+    private final ObjectMapper objectMapper;
+    private final long latencyMillis;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final LongAdder requests = new LongAdder();
+    // one sample per comment request whatever number of clients it covers, nanos from request arrival to written response
+    private final List<Long> requestLatencies = Collections.synchronizedList(new ArrayList<>());
+
+    public OldSystemStub(OldSystemDataset dataset, ObjectMapper objectMapper, long latencyMillis, int threads)
+            throws IOException {
+        this.dataset = dataset;
+        this.objectMapper = objectMapper;
+        this.latencyMillis = latencyMillis;
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/api/v1/clients", handler(this::clients));
+        server.createContext("/api/v1/notes/batch", handler(this::commentBatch));
+        server.createContext("/api/v1/notes/changes", handler(this::commentChanges));
+        server.createContext("/api/v1/notes", handler(this::comments));
+        server.start();
+    }
+
+    public String getAddress() {
+        return "localhost:" + server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public List<Long> drainRequestLatencies() {
+        synchronized (requestLatencies) {
+            List<Long> latencies = new ArrayList<>(requestLatencies);
+            requestLatencies.clear();
+            return latencies;
+        }
+    }
+
+    public void resetRequests() {
+        requests.reset();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Endpoint {
+        // returns response body and whether it answers a comment request
+        Response handle(JsonNode request);
+    }
+
+    private record Response(Object body, boolean commentRequest) {
+    }
+
+    private HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            long start = System.nanoTime();
+            requests.increment();
+            try (exchange) {
+                JsonNode request;
+                try (InputStream body = exchange.getRequestBody()) {
+                    request = objectMapper.readTree(body);
+                }
+                Response response = endpoint.handle(request);
+
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+
+                byte[] payload = objectMapper.writeValueAsBytes(response.body());
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, payload.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(payload);
+                }
+
+                if (response.commentRequest()) {
+                    requestLatencies.add(System.nanoTime() - start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | IOException e) {
+                log.error("Stub request failed: {}", exchange.getRequestURI(), e);
+                exchange.sendResponseHeaders(500, -1);
+            }
+        };
+    }
+
+    private Response clients(JsonNode request) {
+        return new Response(dataset.getClients(), false);
+    }
+
+    private Response comments(JsonNode request) {
+        UUID clientGuid = UUID.fromString(request.get("clientGuid").asText());
+        return new Response(dataset.getComments(clientGuid), true);
+    }
+
+    // clients without comments are absent in the result, like in old system
+    private Response commentBatch(JsonNode request) {
+        List<ClientCommentsDto> result = new ArrayList<>();
+        JsonNode clientGuids = request.get("clientGuids");
+        for (JsonNode clientGuid : clientGuids) {
+            UUID guid = UUID.fromString(clientGuid.asText());
+            List<CommentResponseDto> comments = dataset.getComments(guid);
+            if (!comments.isEmpty()) {
+                result.add(new ClientCommentsDto(guid, comments));
+            }
+        }
+        return new Response(result, true);
+    }
+
+    private Response commentChanges(JsonNode request) {
+        LocalDateTime since = request.hasNonNull("since")
+                ? objectMapper.convertValue(request.get("since"), LocalDateTime.class)
+                : null;
+        UUID afterId = request.hasNonNull("afterId") ? UUID.fromString(request.get("afterId").asText()) : null;
+        int limit = request.hasNonNull("limit") ? request.get("limit").asInt() : 1000;
+        // comments created before the date are out of the feed even when modified later, like in old system
+        LocalDateTime createdFrom = request.hasNonNull("dateFrom")
+                ? objectMapper.convertValue(request.get("dateFrom"), LocalDate.class).atStartOfDay()
+                : null;
+
+        List<CommentResponseDto> page = dataset.getCommentsByChange().stream()
+                .filter(comment -> createdFrom == null || !comment.createdDateTime().isBefore(createdFrom))
+                .filter(comment -> isAfter(comment, since, afterId))
+                .limit(limit)
+                .toList();
+        CommentResponseDto last = page.isEmpty() ? null : page.get(page.size() - 1);
+
+        return new Response(CommentChangesDto.builder()
+                .comments(page)
+                .lastChangedAt(last == null ? null : OldSystemDataset.changedAt(last))
+                .lastId(last == null ? null : last.guid())
+                .hasMore(page.size() == limit)
+                .build(), true);
+    }
+
+    private static boolean isAfter(CommentResponseDto comment, LocalDateTime since, UUID afterId) {
+        if (since == null) {
+            return true;
+        }
+        int byTime = OldSystemDataset.changedAt(comment).compareTo(since);
+        return byTime > 0 || (byTime == 0 && (afterId == null || comment.guid().compareTo(afterId) > 0));
+    }
+}
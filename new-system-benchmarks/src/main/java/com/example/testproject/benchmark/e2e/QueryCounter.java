@@ -0,0 +1,69 @@
+package com.example.testproject.benchmark.e2e;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+// counts statements sent to the database by every path: jpa, jdbc template and jdbc batches
+public class QueryCounter {
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public void reset() {
+        queries.reset();
+        batches.reset();
+    }
+
+    // copy streams go through the unwrapped driver connection and are not counted
+    public DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, result) -> method.getName().equals("getConnection")
+                ? proxy(Connection.class, result, this::wrapStatement)
+                : result);
+    }
+
+    private Object wrapStatement(Method method, Object result) {
+        if (result instanceof Statement statement) {
+            Class<?> type = method.getReturnType();
+            return proxy(type, statement, (statementMethod, statementResult) -> {
+                String name = statementMethod.getName();
+                if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                    batches.increment();
+                    queries.increment();
+                } else if (name.startsWith("execute")) {
+                    queries.increment();
+                }
+                return statementResult;
+            });
+        }
+        return result;
+    }
+
+    private interface ResultWrapper {
+        Object wrap(Method method, Object result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, Object target, ResultWrapper resultWrapper) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return resultWrapper.wrap(method, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(QueryCounter.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.testproject.benchmark.e2e;
+
+import com.example.testproject.TestProjectApplication;
+import com.example.testproject.benchmark.BenchmarkData;
+import com.example.testproject.benchmark.BenchmarkDatabase;
+import com.example.testproject.service.SynchronizationCoordinator;
+import com.example.testproject.service.SynchronizationRun;
+import com.example.testproject.statistics.RunStatistics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// runs the whole new system against an in-process old system and a real postgres:
+// one first synchronization into empty tables, then steady state runs with a share of comments edited before each.
+// any new system setting is passed as a system property, e.g. -DSYNC_ENGINE=reactive
+public class SyncBenchmarkHarness {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int clientCount = Integer.parseInt(options.getOrDefault("clients", "10000"));
+        int commentsPerClient = Integer.parseInt(options.getOrDefault("comments-per-client", "10"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "5"));
+        int stubThreads = Integer.parseInt(options.getOrDefault("stub-threads", "32"));
+        int steadyRuns = Integer.parseInt(options.getOrDefault("steady-runs", "5"));
+        double changedShare = Double.parseDouble(options.getOrDefault("changed-share", "0.01"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String jdbcUrl = options.get("jdbc-url");
+        String schema = options.getOrDefault("schema", BenchmarkDatabase.DEFAULT_SCHEMA);
+        String resultFile = options.getOrDefault("result", "e2e-result.json");
+
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        OldSystemDataset dataset = new OldSystemDataset(clientCount, commentsPerClient, seed);
+        QueryCounter queryCounter = new QueryCounter();
+        List<ScenarioResult> results = new ArrayList<>();
+
+        try (OldSystemStub stub = new OldSystemStub(dataset, objectMapper, latencyMillis, stubThreads);
+             BenchmarkDatabase database = BenchmarkDatabase.start(jdbcUrl, options.get("jdbc-user"), options.get("jdbc-password"))) {
+            database.applySchema(new File(schema));
+
+            try (ConfigurableApplicationContext context = startNewSystem(stub, database, queryCounter)) {
+                SynchronizationCoordinator coordinator = context.getBean(SynchronizationCoordinator.class);
+
+                results.add(runScenario("first-sync", 1, coordinator, dataset, stub, queryCounter, () -> {
+                }));
+                results.add(runScenario("steady-state", steadyRuns, coordinator, dataset, stub, queryCounter,
+                        () -> dataset.modifyComments(changedShare)));
+            }
+        }
+
+        printResults(results, dataset);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(resultFile), Map.of(
+                "clients", clientCount,
+                "comments", dataset.getCommentCount(),
+                "latencyMillis", latencyMillis,
+                "changedShare", changedShare,
+                "scenarios", results));
+        System.out.println("Results are written to " + resultFile);
+    }
+
+    private static ConfigurableApplicationContext startNewSystem(OldSystemStub stub, BenchmarkDatabase database,
+                                                                 QueryCounter queryCounter) {
+        Map<String, Object> properties = database.dataSourceProperties();
+        properties.put("OLD_SYSTEM_ADDRESS", stub.getAddress());
+        properties.put("logging.level.root", "WARN");
+
+        // every data source of the application is counted, whichever repository or write path uses it
+        BeanPostProcessor dataSourceCounter = new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? queryCounter.wrap(dataSource) : bean;
+            }
+        };
+
+        return new SpringApplicationBuilder(TestProjectApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(dataSourceCounter))
+                .run();
+    }
+
+    private static ScenarioResult runScenario(String name, int runs, SynchronizationCoordinator coordinator,
+                                              OldSystemDataset dataset, OldSystemStub stub,
+                                              QueryCounter queryCounter, Runnable beforeRun) {
+        long totalNanos = 0;
+        long createdNotes = 0;
+        long updatedNotes = 0;
+        long queries = 0;
+        long batches = 0;
+        long requests = 0;
+        List<Long> latencies = new ArrayList<>();
+
+        for (int i = 0; i < runs; i++) {
+            // data is changed before counters are reset, only the run itself is measured
+            beforeRun.run();
+            queryCounter.reset();
+            stub.resetRequests();
+            stub.drainRequestLatencies();
+
+            long start = System.nanoTime();
+            SynchronizationRun run = coordinator.requestSynchronization();
+            run.getCompletion().join();
+            totalNanos += System.nanoTime() - start;
+
+            if (run.getStatus() != SynchronizationRun.Status.FINISHED) {
+                throw new IllegalStateException("Synchronization run " + run.getId() + " failed: "
+                        + run.toDto().error());
+            }
+
+            RunStatistics statistics = run.getStatistics();
+            createdNotes += statistics.getNewNotes().sum();
+            updatedNotes += statistics.getUpdatedNotes().sum();
+            queries += queryCounter.getQueries();
+            batches += queryCounter.getBatches();
+            requests += stub.getRequests();
+            latencies.addAll(stub.drainRequestLatencies());
+        }
+
+        double seconds = totalNanos / 1e9;
+        Collections.sort(latencies);
+        return new ScenarioResult(name, runs, seconds,
+                runs / seconds,
+                (double) runs * dataset.getClients().size() / seconds,
+                percentileMillis(latencies, 0.50),
+                percentileMillis(latencies, 0.99),
+                queries / runs,
+                batches / runs,
+                requests / runs,
+                createdNotes / runs,
+                updatedNotes / runs);
+    }
+
+    private static double percentileMillis(List<Long> sortedNanos, double percentile) {
+        if (sortedNanos.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(index, 0)) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static void printResults(List<ScenarioResult> results, OldSystemDataset dataset) {
+        System.out.printf("%nClients: %d, comments: %d%n", dataset.getClients().size(), dataset.getCommentCount());
+        System.out.printf("%-14s %5s %10s %10s %12s %10s %10s %10s %10s %10s %10s %10s%n",
+                "Scenario", "Runs", "Seconds", "Runs/s", "Clients/s", "p50, ms", "p99, ms",
+                "Queries", "Batches", "Requests", "Created", "Updated");
+        for (ScenarioResult result : results) {
+            System.out.printf("%-14s %5d %10.2f %10.3f %12.1f %10.2f %10.2f %10d %10d %10d %10d %10d%n",
+                    result.scenario(), result.runs(), result.seconds(), result.runsPerSecond(),
+                    result.clientsPerSecond(), result.p50RequestLatencyMillis(), result.p99RequestLatencyMillis(),
+                    result.queriesPerRun(), result.batchesPerRun(), result.oldSystemRequestsPerRun(),
+                    result.createdNotesPerRun(), result.updatedNotesPerRun());
+        }
+        System.out.println("Queries, batches, requests and notes are per run, copy streams are not counted as queries");
+        System.out.println("p50 and p99 are latencies of single comment requests answered by the stub");
+    }
+
+    // --name=value pairs
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    public record ScenarioResult(
+            String scenario,
+            int runs,
+            double seconds,
+            double runsPerSecond,
+            double clientsPerSecond,
+            double p50RequestLatencyMillis,
+            double p99RequestLatencyMillis,
+            long queriesPerRun,
+            long batchesPerRun,
+            long oldSystemRequestsPerRun,
+            long createdNotesPerRun,
+            long updatedNotesPerRun
+    ) {
+    }
+}
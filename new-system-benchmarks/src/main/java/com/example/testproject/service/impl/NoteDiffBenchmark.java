@@ -0,0 +1,79 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.benchmark.BenchmarkData;
+import com.example.testproject.dto.CommentResponseDto;
+import com.example.testproject.entity.Note;
+import com.example.testproject.entity.Patient;
+import com.example.testproject.entity.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// comparison of a fetched comment with its stored note, done for every comment of every run
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NoteDiffBenchmark {
+    private static final int NOTE_COUNT = 1000;
+    private static final Long PATIENT_ID = 1L;
+
+    private NoteServiceImpl noteService;
+    private List<CommentResponseDto> comments;
+    private List<Note> notes;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // only validator and statistics are used by the measured methods
+        noteService = new NoteServiceImpl(BenchmarkData.validator(), null, null, BenchmarkData.objectMapper(),
+                null, null, null, null, null, null, null, BenchmarkData.statistics(),
+                "localhost:8080", 1, 200, true, 5000, 60, false, 64, 1000, "jdbc", 0, 16, "never");
+
+        comments = BenchmarkData.comments(NOTE_COUNT, 0);
+        user = new User();
+        user.setLogin("user1");
+
+        notes = new ArrayList<>(NOTE_COUNT);
+        comments.forEach(comment -> notes.add(new Note()));
+        resetNotes();
+    }
+
+    // stored notes are older than comments again, so every invocation updates all of them
+    @Setup(Level.Invocation)
+    public void resetNotes() {
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            CommentResponseDto comment = comments.get(i);
+            Note note = notes.get(i);
+            note.setNote("Stored text");
+            note.setCreatedAt(comment.createdDateTime());
+            note.setModifiedAt(comment.createdDateTime().minusDays(1));
+            note.setCreatedBy(user);
+            note.setModifiedBy(null);
+            note.setCommentId(comment.guid());
+            note.setPatient(Patient.builder().id(PATIENT_ID).build());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public void updateChangedNotes(Blackhole blackhole) {
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            blackhole.consume(noteService.updateNodeIfNeeded(comments.get(i), user, PATIENT_ID, notes.get(i)));
+        }
+    }
+
+    // fingerprint decides whether a stored note has to be loaded and compared at all
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public void fingerprintComments(Blackhole blackhole) {
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            blackhole.consume(NoteServiceImpl.fingerprint(comments.get(i), PATIENT_ID));
+        }
+    }
+}
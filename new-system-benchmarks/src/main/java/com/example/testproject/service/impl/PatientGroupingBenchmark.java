@@ -0,0 +1,50 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.benchmark.BenchmarkData;
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.entity.Patient;
+import com.example.testproject.repository.PatientJdbcRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// grouping of new clients into patients by full name, database write is left out
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PatientGroupingBenchmark {
+    @Param({"200", "2000", "20000"})
+    private int size;
+
+    private PatientServiceImpl patientService;
+    private List<ClientDto> clients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PatientJdbcRepository patientJdbcRepository = new PatientJdbcRepository(null, null) {
+            @Override
+            public void insertPatients(List<Patient> patients) {
+                long id = 0;
+                for (Patient patient : patients) {
+                    patient.setId(++id);
+                }
+            }
+        };
+        patientService = new PatientServiceImpl(null, patientJdbcRepository, null, BenchmarkData.statistics(), "jdbc");
+
+        clients = BenchmarkData.clients(size, 0);
+    }
+
+    @Benchmark
+    public HashMap<FullNameDto, Long> createNewPatients() {
+        HashMap<FullNameDto, Long> patientIdsByFullName = new HashMap<>();
+        patientService.createNewPatients(clients, patientIdsByFullName);
+        return patientIdsByFullName;
+    }
+}
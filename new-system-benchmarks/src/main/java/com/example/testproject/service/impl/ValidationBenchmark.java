@@ -0,0 +1,57 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.benchmark.BenchmarkData;
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentResponseDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// bean validation of every fetched client and comment, one percent of them is invalid
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+    private static final double INVALID_SHARE = 0.01;
+
+    // one comment batch and the whole client list of the default data set
+    @Param({"200", "2000"})
+    private int size;
+
+    private ClientServiceImpl clientService;
+    private NoteServiceImpl noteService;
+    private List<ClientDto> clients;
+    private List<CommentResponseDto> comments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clientService = new ClientServiceImpl(BenchmarkData.validator(), null, BenchmarkData.objectMapper(),
+                BenchmarkData.statistics(), null, "localhost:8080");
+        noteService = new NoteServiceImpl(BenchmarkData.validator(), null, null, BenchmarkData.objectMapper(),
+                null, null, null, null, null, null, null, BenchmarkData.statistics(),
+                "localhost:8080", 1, 200, true, 5000, 60, false, 64, 1000, "jdbc", 0, 16, "never");
+
+        clients = BenchmarkData.clients(size, INVALID_SHARE);
+        comments = BenchmarkData.comments(size, INVALID_SHARE);
+    }
+
+    // invalid items are removed in place, so every invocation filters a fresh copy
+    @Benchmark
+    public List<ClientDto> filterInvalidClientData() {
+        List<ClientDto> copy = new ArrayList<>(clients);
+        clientService.filterInvalidClientData(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public List<CommentResponseDto> filterInvalidCommentData() {
+        List<CommentResponseDto> copy = new ArrayList<>(comments);
+        noteService.filterInvalidCommentData(copy);
+        return copy;
+    }
+}
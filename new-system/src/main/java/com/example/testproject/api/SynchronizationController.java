@@ -1,21 +1,32 @@
 package com.example.testproject.api;
 
-import com.example.testproject.service.SynchronizationService;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import com.example.testproject.dto.SynchronizationRunDto;
+import com.example.testproject.service.SynchronizationCoordinator;
+import com.example.testproject.service.SynchronizationRun;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/synchronization")
 public class SynchronizationController {
-    private final SynchronizationService synchronizationService;
+    private final SynchronizationCoordinator synchronizationCoordinator;
 
-    public SynchronizationController(SynchronizationService synchronizationService) {
-        this.synchronizationService = synchronizationService;
+    public SynchronizationController(SynchronizationCoordinator synchronizationCoordinator) {
+        this.synchronizationCoordinator = synchronizationCoordinator;
     }
 
+    // run goes on in background, its progress is polled by id
     @PostMapping("/force")
-    public void forceSynchronization() {
-        synchronizationService.synchronize();
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public SynchronizationRunDto forceSynchronization() {
+        return synchronizationCoordinator.requestSynchronization().toDto();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<SynchronizationRunDto> getSynchronization(@PathVariable UUID id) {
+        return ResponseEntity.of(synchronizationCoordinator.findRun(id).map(SynchronizationRun::toDto));
     }
 }
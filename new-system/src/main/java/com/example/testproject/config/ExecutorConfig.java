@@ -0,0 +1,60 @@
+package com.example.testproject.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+    // lives as long as the application, running synchronization is finished before shutdown
+    @Bean
+    public ThreadPoolTaskExecutor noteSyncExecutor(@Value("${THREAD_COUNT:4}") int threadCount,
+                                                   @Value("${SYNC_SHUTDOWN_TIMEOUT_SECONDS:60}") int shutdownTimeoutSeconds) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threadCount);
+        executor.setMaxPoolSize(threadCount);
+        executor.setThreadNamePrefix("note-sync-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(shutdownTimeoutSeconds);
+        return executor;
+    }
+
+    // single thread, so synchronization runs never overlap and a requested run waits for the active one
+    @Bean
+    public ThreadPoolTaskExecutor syncRunExecutor(@Value("${SYNC_SHUTDOWN_TIMEOUT_SECONDS:60}") int shutdownTimeoutSeconds) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("sync-run-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(shutdownTimeoutSeconds);
+        return executor;
+    }
+
+    // resolves patients of full name partitions in parallel when patient and note phases are pipelined
+    @Bean
+    public ThreadPoolTaskExecutor patientSyncExecutor(@Value("${PATIENT_PARTITIONS:4}") int partitionCount,
+                                                      @Value("${SYNC_SHUTDOWN_TIMEOUT_SECONDS:60}") int shutdownTimeoutSeconds) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(partitionCount);
+        executor.setMaxPoolSize(partitionCount);
+        executor.setThreadNamePrefix("patient-sync-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(shutdownTimeoutSeconds);
+        return executor;
+    }
+
+    // dedicated note writers, so database concurrency is tuned apart from comment fetching
+    @Bean
+    public ThreadPoolTaskExecutor noteWriteExecutor(@Value("${DB_WRITER_COUNT:0}") int writerCount,
+                                                    @Value("${SYNC_SHUTDOWN_TIMEOUT_SECONDS:60}") int shutdownTimeoutSeconds) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(writerCount, 1));
+        executor.setMaxPoolSize(Math.max(writerCount, 1));
+        executor.setThreadNamePrefix("note-write-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(shutdownTimeoutSeconds);
+        return executor;
+    }
+}
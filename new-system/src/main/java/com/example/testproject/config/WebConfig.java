@@ -1,13 +1,77 @@
 package com.example.testproject.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class WebConfig {
+    private final int POOL_SIZE;
+    private final int CONNECT_TIMEOUT_SECONDS;
+    private final int READ_TIMEOUT_SECONDS;
+    private final boolean HTTP2;
+
+    public WebConfig(@Value("${HTTP_POOL_SIZE:${THREAD_COUNT:4}}") int poolSize,
+                     @Value("${HTTP_CONNECT_TIMEOUT_SECONDS:10}") int connectTimeoutSeconds,
+                     @Value("${HTTP_READ_TIMEOUT_SECONDS:120}") int readTimeoutSeconds,
+                     @Value("${OLD_SYSTEM_HTTP2:false}") boolean http2) {
+        POOL_SIZE = poolSize;
+        CONNECT_TIMEOUT_SECONDS = connectTimeoutSeconds;
+        READ_TIMEOUT_SECONDS = readTimeoutSeconds;
+        HTTP2 = http2;
+    }
+
+    // all calls go to one old system host, so whole pool is available for one route
+    @Bean
+    public PoolingHttpClientConnectionManager oldSystemConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(POOL_SIZE)
+                .setMaxConnPerRoute(POOL_SIZE)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofSeconds(CONNECT_TIMEOUT_SECONDS))
+                        .setSocketTimeout(Timeout.ofSeconds(READ_TIMEOUT_SECONDS))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+    }
+
+    // gzip is requested and decompressed by the client itself
+    @Bean
+    public CloseableHttpClient oldSystemHttpClient(PoolingHttpClientConnectionManager oldSystemConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(oldSystemConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofSeconds(READ_TIMEOUT_SECONDS))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient oldSystemHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(oldSystemHttpClient));
+    }
+
+    // non-blocking client for pipelined comment fetch, multiplexes requests over one connection with http2
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public HttpClient httpClient() {
+        return HttpClient.newBuilder()
+                .version(HTTP2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(CONNECT_TIMEOUT_SECONDS))
+                .build();
     }
 }
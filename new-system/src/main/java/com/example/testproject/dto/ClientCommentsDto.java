@@ -0,0 +1,13 @@
+package com.example.testproject.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+public record ClientCommentsDto(
+        UUID clientGuid,
+        List<CommentResponseDto> comments
+) {
+}
@@ -0,0 +1,16 @@
+package com.example.testproject.dto;
+
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+public record CommentChangesDto(
+        List<CommentResponseDto> comments,
+        LocalDateTime lastChangedAt,
+        UUID lastId,
+        boolean hasMore
+) {
+}
@@ -0,0 +1,21 @@
+package com.example.testproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+public class CommentChangesRequestDto {
+    private LocalDateTime since;
+    private UUID afterId;
+    private LocalDate dateFrom;
+    private Integer limit;
+}
@@ -0,0 +1,9 @@
+package com.example.testproject.dto;
+
+import com.example.testproject.entity.Status;
+
+public record PatientStatusDto(
+        Long patientId,
+        Status status
+) {
+}
@@ -0,0 +1,30 @@
+package com.example.testproject.dto;
+
+import lombok.Builder;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Builder
+public record SynchronizationRunDto(
+        UUID id,
+        String status,
+        String phase,
+        Instant startedAt,
+        long totalClients,
+        long processedClients,
+        long commentsPerSecond,
+        Long etaSeconds,
+        String error,
+        long newPatients,
+        long newClients,
+        long invalidClients,
+        long newUsers,
+        long invalidComments,
+        long failedCommentFetches,
+        long skippedCommentFetches,
+        long newNotes,
+        long updatedNotes,
+        long writtenNotesPerSecond
+) {
+}
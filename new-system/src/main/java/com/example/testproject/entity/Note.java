@@ -15,7 +15,8 @@ import java.util.UUID;
 @AllArgsConstructor
 public class Note {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_note_id_seq")
+    @SequenceGenerator(name = "patient_note_id_seq", sequenceName = "patient_note_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "NOTE", length = 4000)
@@ -41,4 +42,8 @@ public class Note {
     @ManyToOne
     @JoinColumn(name = "PATIENT_ID", nullable = false)
     private Patient patient;
+
+    // hash of the comment version this note was last synchronized with
+    @Column(name = "FINGERPRINT", length = 64)
+    private String fingerprint;
 }
@@ -17,7 +17,8 @@ import java.util.Set;
 @AllArgsConstructor
 public class Patient {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_profile_id_seq")
+    @SequenceGenerator(name = "patient_profile_id_seq", sequenceName = "patient_profile_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "FIRST_NAME")
@@ -0,0 +1,30 @@
+package com.example.testproject.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "SYNC_WATERMARK")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncWatermark {
+    @Id
+    @Column(name = "NAME")
+    private String name;
+
+    @Column(name = "WATERMARK", nullable = false)
+    private LocalDateTime watermark;
+
+    @Column(name = "UPDATED_AT", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -12,7 +12,8 @@ import lombok.Setter;
 @NoArgsConstructor
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "company_user_id_seq")
+    @SequenceGenerator(name = "company_user_id_seq", sequenceName = "company_user_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "LOGIN", nullable = false, unique = true)
@@ -0,0 +1,138 @@
+package com.example.testproject.repository;
+
+import com.example.testproject.entity.Note;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Repository
+public class NoteJdbcRepository {
+    private static final int BATCH_SIZE = 500;
+    private static final String NOTE_ID_SEQUENCE = "patient_note_id_seq";
+
+    // backed by unique index on comment_id, id of an existing row is kept
+    private static final String UPSERT_NOTE = """
+            INSERT INTO patient_note (id, note, created_date_time, last_modified_date_time,
+                                      created_by_user_id, last_modified_by_user_id, comment_id, patient_id, fingerprint)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (comment_id) DO UPDATE SET
+                note = EXCLUDED.note,
+                created_date_time = EXCLUDED.created_date_time,
+                last_modified_date_time = EXCLUDED.last_modified_date_time,
+                created_by_user_id = EXCLUDED.created_by_user_id,
+                last_modified_by_user_id = EXCLUDED.last_modified_by_user_id,
+                patient_id = EXCLUDED.patient_id,
+                fingerprint = EXCLUDED.fingerprint
+            """;
+    // no conflict handling in copy, used only while the table is known to be empty
+    private static final String COPY_NOTES = """
+            COPY patient_note (id, note, created_date_time, last_modified_date_time,
+                               created_by_user_id, last_modified_by_user_id, comment_id, patient_id, fingerprint)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+    private static final String SELECT_ANY_NOTE = "SELECT EXISTS (SELECT 1 FROM patient_note)";
+    private static final String SELECT_FINGERPRINTS = "SELECT comment_id, fingerprint FROM patient_note WHERE comment_id = ANY(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    public NoteJdbcRepository(JdbcTemplate jdbcTemplate, SequenceIdAllocator sequenceIdAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+    }
+
+    @Transactional
+    public void upsertNotes(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return;
+        }
+
+        assignIds(notes.stream().filter(note -> note.getId() == null).toList());
+
+        jdbcTemplate.batchUpdate(UPSERT_NOTE, notes, BATCH_SIZE, (statement, note) -> {
+            statement.setLong(1, note.getId());
+            statement.setString(2, note.getNote());
+            statement.setTimestamp(3, toTimestamp(note.getCreatedAt()));
+            statement.setTimestamp(4, toTimestamp(note.getModifiedAt()));
+            if (note.getCreatedBy() == null) {
+                statement.setNull(5, Types.BIGINT);
+            } else {
+                statement.setLong(5, note.getCreatedBy().getId());
+            }
+            if (note.getModifiedBy() == null) {
+                statement.setNull(6, Types.BIGINT);
+            } else {
+                statement.setLong(6, note.getModifiedBy().getId());
+            }
+            statement.setObject(7, note.getCommentId());
+            statement.setLong(8, note.getPatient().getId());
+            statement.setString(9, note.getFingerprint());
+        });
+    }
+
+    @Transactional
+    public void copyNotes(List<Note> notes) {
+        assignIds(notes);
+
+        PgCopySupport.copyIn(jdbcTemplate, COPY_NOTES, notes, note -> new Object[]{
+                note.getId(),
+                note.getNote(),
+                note.getCreatedAt(),
+                note.getModifiedAt(),
+                note.getCreatedBy() == null ? null : note.getCreatedBy().getId(),
+                note.getModifiedBy() == null ? null : note.getModifiedBy().getId(),
+                note.getCommentId(),
+                note.getPatient().getId(),
+                note.getFingerprint()
+        });
+    }
+
+    public boolean isEmpty() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(SELECT_ANY_NOTE, Boolean.class));
+    }
+
+    // fingerprint is null for notes written before fingerprints were introduced
+    public Map<UUID, String> findFingerprintsByCommentIds(Collection<UUID> commentIds) {
+        Map<UUID, String> fingerprintsByCommentId = new HashMap<>();
+        if (commentIds.isEmpty()) {
+            return fingerprintsByCommentId;
+        }
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_FINGERPRINTS);
+            statement.setArray(1, connection.createArrayOf("uuid", commentIds.toArray()));
+            return statement;
+        }, (ResultSet rs) -> {
+            fingerprintsByCommentId.put(rs.getObject("comment_id", UUID.class), rs.getString("fingerprint"));
+        });
+
+        return fingerprintsByCommentId;
+    }
+
+    // new notes get their ids before insert, column default would spend a whole sequence increment per row
+    private void assignIds(List<Note> newNotes) {
+        if (newNotes.isEmpty()) {
+            return;
+        }
+
+        long[] ids = sequenceIdAllocator.nextIds(NOTE_ID_SEQUENCE, newNotes.size());
+        for (int i = 0; i < newNotes.size(); i++) {
+            newNotes.get(i).setId(ids[i]);
+        }
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+}
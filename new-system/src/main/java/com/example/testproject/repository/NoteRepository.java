@@ -1,12 +1,14 @@
 package com.example.testproject.repository;
 
 import com.example.testproject.entity.Note;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.ListCrudRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface NoteRepository extends ListCrudRepository<Note, Long> {
-    Note findByCommentId(UUID commentId);
-
-    boolean existsByCommentId(UUID commentId);
+    @EntityGraph(attributePaths = {"patient", "createdBy", "modifiedBy"})
+    List<Note> findByCommentIdIn(Collection<UUID> commentIds);
 }
@@ -0,0 +1,162 @@
+package com.example.testproject.repository;
+
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
+import com.example.testproject.entity.Patient;
+import com.example.testproject.entity.Status;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+
+@Repository
+public class PatientJdbcRepository {
+    private static final int FETCH_SIZE = 1000;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String SELECT_PATIENT_NAMES = "SELECT id, first_name, last_name FROM patient_profile";
+    private static final String SELECT_PATIENT_STATUSES = """
+            SELECT cm.id, cm.patient_id, p.status_id
+            FROM old_client_mapping cm
+            JOIN patient_profile p ON p.id = cm.patient_id
+            """;
+    private static final String SELECT_CLIENT_PATIENT_STATUSES = SELECT_PATIENT_STATUSES + "WHERE cm.id = ANY(?)";
+    private static final String SELECT_CLIENT_PATIENT_IDS = "SELECT id, patient_id FROM old_client_mapping WHERE id = ANY(?)";
+    private static final String PATIENT_ID_SEQUENCE = "patient_profile_id_seq";
+    // ids are fresh from the sequence, so rows can be copied without conflict handling
+    private static final String COPY_PATIENTS = """
+            COPY patient_profile (id, first_name, last_name, status_id)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+    // client renamed in old system moves to the patient of its new name, unchanged mappings are not rewritten
+    private static final String INSERT_CLIENT_MAPPING = """
+            INSERT INTO old_client_mapping (id, patient_id)
+            VALUES (?, ?)
+            ON CONFLICT (id) DO UPDATE SET patient_id = EXCLUDED.patient_id
+            WHERE old_client_mapping.patient_id IS DISTINCT FROM EXCLUDED.patient_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    public PatientJdbcRepository(JdbcTemplate jdbcTemplate, SequenceIdAllocator sequenceIdAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+    }
+
+    // read with server side cursor (needs transaction), so only the index itself is kept in memory
+    @Transactional(readOnly = true)
+    public Map<FullNameDto, Long> findPatientIdsByFullName() {
+        Map<FullNameDto, Long> patientIdsByFullName = new HashMap<>();
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_PATIENT_NAMES, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+            );
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (ResultSet rs) -> {
+            patientIdsByFullName.putIfAbsent(
+                    new FullNameDto(rs.getString("first_name"), rs.getString("last_name")),
+                    rs.getLong("id")
+            );
+        });
+
+        return patientIdsByFullName;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<UUID, PatientStatusDto> findPatientStatusesByClientGuid() {
+        Map<UUID, PatientStatusDto> patientStatusesByClientGuid = new HashMap<>();
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_PATIENT_STATUSES, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+            );
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (ResultSet rs) -> {
+            patientStatusesByClientGuid.put(
+                    rs.getObject("id", UUID.class),
+                    new PatientStatusDto(rs.getLong("patient_id"), Status.getByCode(rs.getShort("status_id")))
+            );
+        });
+
+        return patientStatusesByClientGuid;
+    }
+
+    public Map<UUID, PatientStatusDto> findPatientStatusesByClientGuids(Collection<UUID> clientGuids) {
+        Map<UUID, PatientStatusDto> patientStatusesByClientGuid = new HashMap<>();
+        if (clientGuids.isEmpty()) {
+            return patientStatusesByClientGuid;
+        }
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_CLIENT_PATIENT_STATUSES);
+            statement.setArray(1, connection.createArrayOf("uuid", clientGuids.toArray()));
+            return statement;
+        }, (ResultSet rs) -> {
+            patientStatusesByClientGuid.put(
+                    rs.getObject("id", UUID.class),
+                    new PatientStatusDto(rs.getLong("patient_id"), Status.getByCode(rs.getShort("status_id")))
+            );
+        });
+
+        return patientStatusesByClientGuid;
+    }
+
+    // current patient of every already mapped client, unmapped clients are absent
+    public Map<UUID, Long> findPatientIdsByClientGuids(Collection<UUID> clientGuids) {
+        Map<UUID, Long> patientIdsByClientGuid = new HashMap<>();
+        if (clientGuids.isEmpty()) {
+            return patientIdsByClientGuid;
+        }
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_CLIENT_PATIENT_IDS);
+            statement.setArray(1, connection.createArrayOf("uuid", clientGuids.toArray()));
+            return statement;
+        }, (ResultSet rs) -> {
+            patientIdsByClientGuid.put(rs.getObject("id", UUID.class), rs.getLong("patient_id"));
+        });
+
+        return patientIdsByClientGuid;
+    }
+
+    // patients get their ids before insert, so their client mappings are batched right after them
+    @Transactional
+    public void insertPatients(List<Patient> patients) {
+        if (patients.isEmpty()) {
+            return;
+        }
+
+        long[] ids = sequenceIdAllocator.nextIds(PATIENT_ID_SEQUENCE, patients.size());
+        for (int i = 0; i < patients.size(); i++) {
+            patients.get(i).setId(ids[i]);
+        }
+
+        PgCopySupport.copyIn(jdbcTemplate, COPY_PATIENTS, patients, patient -> new Object[]{
+                patient.getId(),
+                patient.getFirstName(),
+                patient.getLastName(),
+                patient.getStatus().getCode()
+        });
+
+        Map<UUID, Long> patientIdsByClientGuid = new LinkedHashMap<>();
+        patients.forEach(patient -> patient.getClientMappings()
+                .forEach(mapping -> patientIdsByClientGuid.put(mapping.getId(), patient.getId())));
+        insertClientMappings(patientIdsByClientGuid);
+    }
+
+    @Transactional
+    public void insertClientMappings(Map<UUID, Long> patientIdsByClientGuid) {
+        jdbcTemplate.batchUpdate(INSERT_CLIENT_MAPPING, new ArrayList<>(patientIdsByClientGuid.entrySet()), BATCH_SIZE,
+                (statement, mapping) -> {
+                    statement.setObject(1, mapping.getKey());
+                    statement.setLong(2, mapping.getValue());
+                });
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.testproject.repository;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.function.Function;
+
+// rows are streamed to 'COPY ... FROM STDIN WITH (FORMAT csv)' without building the whole payload in memory
+final class PgCopySupport {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PgCopySupport() {
+    }
+
+    static <T> void copyIn(JdbcTemplate jdbcTemplate, String copySql, Collection<T> rows, Function<T, Object[]> columns) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new PGCopyOutputStream(pgConnection, copySql, BUFFER_SIZE), StandardCharsets.UTF_8))) {
+                for (T row : rows) {
+                    writeRow(writer, columns.apply(row));
+                }
+            } catch (IOException e) {
+                throw new SQLException("Copy failed: " + copySql, e);
+            }
+            return null;
+        });
+    }
+
+    // unquoted empty field is null in csv format, every value is quoted so empty strings survive
+    private static void writeRow(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write('"');
+                writer.write(values[i].toString().replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+        writer.write('\n');
+    }
+}
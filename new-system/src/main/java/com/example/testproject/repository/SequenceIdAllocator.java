@@ -0,0 +1,61 @@
+package com.example.testproject.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// hands out ids of jdbc inserts the way hibernate pooled-lo optimizer does for entities,
+// so a row costs one id instead of a whole sequence increment
+@Component
+public class SequenceIdAllocator {
+    // same as INCREMENT BY of identity sequences in schema.sql and allocation size of entities
+    public static final int BLOCK_SIZE = 50;
+
+    private static final String SELECT_BLOCK_STARTS = "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, IdBlock> blocks = new ConcurrentHashMap<>();
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // rest of the last block is kept for the next call
+    public long[] nextIds(String sequence, int count) {
+        long[] ids = new long[count];
+        IdBlock block = blocks.computeIfAbsent(sequence, name -> new IdBlock());
+
+        synchronized (block) {
+            int filled = block.take(ids, 0);
+            if (filled < count) {
+                // all missing blocks come with one query
+                int missingBlocks = (count - filled + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                List<Long> starts = jdbcTemplate.queryForList(SELECT_BLOCK_STARTS, Long.class, sequence, missingBlocks);
+                for (Long start : starts) {
+                    block.next = start;
+                    block.end = start + BLOCK_SIZE;
+                    filled = block.take(ids, filled);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    // every value of the sequence starts a block of its own up to the next value
+    private static final class IdBlock {
+        private long next;
+        private long end;
+
+        private int take(long[] ids, int from) {
+            int filled = from;
+            while (filled < ids.length && next < end) {
+                ids[filled++] = next++;
+            }
+            return filled;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.testproject.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+@Repository
+public class SyncWatermarkJdbcRepository {
+    private static final String SELECT_CLIENTS = "SELECT client_id FROM sync_watermark_client WHERE name = ?";
+    private static final String INSERT_CLIENTS = """
+            INSERT INTO sync_watermark_client (name, client_id)
+            SELECT ?, UNNEST(?)
+            ON CONFLICT (name, client_id) DO NOTHING
+            """;
+    private static final String DELETE_CLIENTS = "DELETE FROM sync_watermark_client WHERE name = ? AND client_id = ANY(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SyncWatermarkJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Set<UUID> findClientIds(String name) {
+        Set<UUID> clientIds = new HashSet<>();
+
+        jdbcTemplate.query(SELECT_CLIENTS, (ResultSet rs) -> {
+            clientIds.add(rs.getObject("client_id", UUID.class));
+        }, name);
+
+        return clientIds;
+    }
+
+    public void insertClientIds(String name, Collection<UUID> clientIds) {
+        updateClientIds(INSERT_CLIENTS, name, clientIds);
+    }
+
+    public void deleteClientIds(String name, Collection<UUID> clientIds) {
+        updateClientIds(DELETE_CLIENTS, name, clientIds);
+    }
+
+    // whole change goes as one array parameter instead of a statement per client
+    private void updateClientIds(String sql, String name, Collection<UUID> clientIds) {
+        if (clientIds.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setString(1, name);
+            statement.setArray(2, connection.createArrayOf("uuid", clientIds.toArray()));
+            return statement;
+        });
+    }
+}
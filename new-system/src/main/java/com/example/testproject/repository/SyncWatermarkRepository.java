@@ -0,0 +1,7 @@
+package com.example.testproject.repository;
+
+import com.example.testproject.entity.SyncWatermark;
+import org.springframework.data.repository.ListCrudRepository;
+
+public interface SyncWatermarkRepository extends ListCrudRepository<SyncWatermark, String> {
+}
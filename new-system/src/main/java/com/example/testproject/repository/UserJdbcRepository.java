@@ -0,0 +1,57 @@
+package com.example.testproject.repository;
+
+import com.example.testproject.entity.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@Repository
+public class UserJdbcRepository {
+    private static final String USER_ID_SEQUENCE = "company_user_id_seq";
+    // only really inserted rows are returned, logins inserted concurrently by someone else are skipped
+    private static final String INSERT_USERS = """
+            INSERT INTO company_user (id, login)
+            SELECT * FROM UNNEST(?, ?)
+            ON CONFLICT (login) DO NOTHING
+            RETURNING id, login
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    public UserJdbcRepository(JdbcTemplate jdbcTemplate, SequenceIdAllocator sequenceIdAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+    }
+
+    @Transactional
+    public List<User> createUsersIfNotExist(Collection<String> logins) {
+        if (logins.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // id of a login that turns out to exist is lost, only logins missing from the cache get here
+        long[] ids = sequenceIdAllocator.nextIds(USER_ID_SEQUENCE, logins.size());
+        Long[] boxedIds = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxedIds[i] = ids[i];
+        }
+
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_USERS);
+            statement.setArray(1, connection.createArrayOf("int8", boxedIds));
+            statement.setArray(2, connection.createArrayOf("varchar", logins.toArray()));
+            return statement;
+        }, (rs, rowNum) -> {
+            User user = new User();
+            user.setId(rs.getLong("id"));
+            user.setLogin(rs.getString("login"));
+            return user;
+        });
+    }
+}
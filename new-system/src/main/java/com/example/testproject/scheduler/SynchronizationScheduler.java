@@ -1,6 +1,6 @@
 package com.example.testproject.scheduler;
 
-import com.example.testproject.service.SynchronizationService;
+import com.example.testproject.service.SynchronizationCoordinator;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -11,14 +11,15 @@ import java.util.concurrent.TimeUnit;
 @Profile("with_sync")
 public class SynchronizationScheduler {
 
-    private final SynchronizationService synchronizationService;
+    private final SynchronizationCoordinator synchronizationCoordinator;
 
-    public SynchronizationScheduler(SynchronizationService synchronizationService) {
-        this.synchronizationService = synchronizationService;
+    public SynchronizationScheduler(SynchronizationCoordinator synchronizationCoordinator) {
+        this.synchronizationCoordinator = synchronizationCoordinator;
     }
 
+    // waits for the run as before, so ticks don't pile up behind a long run
     @Scheduled(fixedRate = 20, initialDelay = 10, timeUnit = TimeUnit.SECONDS)
     public void synchronize() {
-        synchronizationService.synchronize();
+        synchronizationCoordinator.requestSynchronization().getCompletion().join();
     }
 }
@@ -1,15 +1,20 @@
 package com.example.testproject.service;
 
 import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.FullNameDto;
 import com.example.testproject.exception.ConnectionException;
 import com.example.testproject.exception.DataFetchException;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface ClientService {
     List<ClientDto> fetchClientData() throws DataFetchException, ConnectionException;
 
+    void fetchValidClientData(Consumer<ClientDto> consumer) throws DataFetchException, ConnectionException;
+
     void filterInvalidClientData(List<ClientDto> clients);
 
-    int createNewClients(List<ClientDto> clients);
+    int createNewClients(List<ClientDto> clients, Map<FullNameDto, Long> patientIdsByFullName);
 }
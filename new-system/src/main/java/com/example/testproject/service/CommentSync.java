@@ -0,0 +1,18 @@
+package com.example.testproject.service;
+
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentResponseDto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// comments of one run, engines fetch every batch of active clients through it and complete it once all notes are written
+public interface CommentSync {
+    boolean isInitialLoad();
+
+    CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetch(List<ClientDto> clients);
+
+    void complete();
+}
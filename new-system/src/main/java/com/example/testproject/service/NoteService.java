@@ -2,17 +2,41 @@ package com.example.testproject.service;
 
 import com.example.testproject.dto.ClientDto;
 import com.example.testproject.dto.CommentResponseDto;
+import com.example.testproject.dto.PatientStatusDto;
+import com.example.testproject.entity.Note;
+import com.example.testproject.exception.ConnectionException;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 public interface NoteService {
-    void synchronizeNotesConcurrently(List<ClientDto> clients) throws ExecutionException, InterruptedException;
+    void synchronizeNotesConcurrently(List<ClientDto> clients)
+            throws ExecutionException, InterruptedException, ConnectionException;
 
     void synchronizeNotes(List<ClientDto> clients);
 
+    void synchronizeNotes(List<ClientDto> clients, Map<UUID, PatientStatusDto> patientStatuses);
+
+    void synchronizeNotes(List<ClientDto> clients, Map<UUID, PatientStatusDto> patientStatuses, CommentSync commentSync);
+
+    CommentSync startCommentSync(boolean asyncFetch) throws ConnectionException;
+
     List<CommentResponseDto> fetchClientComments(UUID clientGuid, String agency);
 
+    Map<UUID, List<CommentResponseDto>> fetchClientCommentsBatch(List<UUID> clientGuids);
+
+    CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetchClientCommentsBatchAsync(List<UUID> clientGuids);
+
+    Map<UUID, List<CommentResponseDto>> fetchCommentChanges(LocalDateTime since) throws ConnectionException;
+
     void filterInvalidCommentData(List<CommentResponseDto> commentData);
+
+    List<Note> findNewAndUpdatedNotes(Map<UUID, List<CommentResponseDto>> commentsByClient,
+                                      Map<UUID, PatientStatusDto> patientStatuses);
+
+    void saveNotes(List<Note> notes);
 }
@@ -2,15 +2,29 @@ package com.example.testproject.service;
 
 
 import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
 import com.example.testproject.entity.Patient;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface PatientService {
     void synchronizePatients(List<ClientDto> clients);
 
+    void synchronizePatients(List<ClientDto> clients, Map<FullNameDto, Long> patientIdsByFullName);
+
     int createNewPatients(List<ClientDto> clients);
 
-    Patient findPatientByClientGuid(UUID clientGuid);
+    int createNewPatients(List<ClientDto> clients, Map<FullNameDto, Long> patientIdsByFullName);
+
+    Map<FullNameDto, Long> findPatientIdsByFullName();
+
+    Map<UUID, PatientStatusDto> findPatientStatusesByClientGuid();
+
+    Map<UUID, PatientStatusDto> findPatientStatusesByClientGuids(Collection<UUID> clientGuids);
+
+    Patient getPatientReference(Long patientId);
 }
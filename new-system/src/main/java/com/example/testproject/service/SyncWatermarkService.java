@@ -0,0 +1,16 @@
+package com.example.testproject.service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+public interface SyncWatermarkService {
+    Optional<LocalDateTime> findWatermark(String name);
+
+    void saveWatermark(String name, LocalDateTime watermark);
+
+    Set<UUID> findSyncedClients(String name);
+
+    void saveSyncedClients(String name, Set<UUID> previousClients, Set<UUID> syncedClients);
+}
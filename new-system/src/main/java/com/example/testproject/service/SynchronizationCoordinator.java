@@ -0,0 +1,12 @@
+package com.example.testproject.service;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface SynchronizationCoordinator {
+    // starts a run, queues one behind the active run or joins the one already queued
+    SynchronizationRun requestSynchronization();
+
+    // only a few recent runs are kept
+    Optional<SynchronizationRun> findRun(UUID runId);
+}
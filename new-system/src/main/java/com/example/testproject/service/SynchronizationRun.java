@@ -0,0 +1,71 @@
+package com.example.testproject.service;
+
+import com.example.testproject.dto.SynchronizationRunDto;
+import com.example.testproject.statistics.RunStatistics;
+import com.example.testproject.statistics.Statistics;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+@Getter
+public class SynchronizationRun {
+    public enum Status { QUEUED, RUNNING, FINISHED, FAILED }
+
+    private final UUID id;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile RunStatistics statistics;
+    private volatile Throwable failure;
+
+    public SynchronizationRun(UUID id) {
+        this.id = id;
+    }
+
+    public void start(RunStatistics statistics) {
+        this.statistics = statistics;
+        status = Status.RUNNING;
+    }
+
+    // engines don't rethrow, their failure is taken from run statistics
+    public void finish(Throwable failure) {
+        if (failure == null && statistics != null) {
+            failure = statistics.getFailure();
+        }
+        this.failure = failure;
+        status = failure == null ? Status.FINISHED : Status.FAILED;
+        // completes normally either way, waiting triggers only need to know the run is over
+        completion.complete(null);
+    }
+
+    public SynchronizationRunDto toDto() {
+        RunStatistics runStatistics = statistics;
+        if (runStatistics == null) {
+            return SynchronizationRunDto.builder().id(id).status(status.name()).build();
+        }
+        Statistics.Phase phase = runStatistics.getCurrentPhase();
+        Duration eta = status == Status.RUNNING ? runStatistics.estimateRemainingTime() : null;
+        return SynchronizationRunDto.builder()
+                .id(id)
+                .status(status.name())
+                .phase(phase == null ? null : phase.name())
+                .startedAt(runStatistics.getStartedAt())
+                .totalClients(runStatistics.getTotalClients())
+                .processedClients(runStatistics.getProcessedClients().sum())
+                .commentsPerSecond(runStatistics.getCommentsPerSecond())
+                .etaSeconds(eta == null ? null : eta.toSeconds())
+                .error(failure == null ? null : failure.getMessage())
+                .newPatients(runStatistics.getNewPatients().sum())
+                .newClients(runStatistics.getNewClients().sum())
+                .invalidClients(runStatistics.getInvalidClientData().sum())
+                .newUsers(runStatistics.getNewUsers().sum())
+                .invalidComments(runStatistics.getInvalidComments().sum())
+                .failedCommentFetches(runStatistics.getFailedCommentFetches().sum())
+                .skippedCommentFetches(runStatistics.getSkippedCommentFetches().sum())
+                .newNotes(runStatistics.getNewNotes().sum())
+                .updatedNotes(runStatistics.getUpdatedNotes().sum())
+                .writtenNotesPerSecond(runStatistics.getWrittenNotesPerSecond())
+                .build();
+    }
+}
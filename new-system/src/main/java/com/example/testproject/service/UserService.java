@@ -2,6 +2,13 @@ package com.example.testproject.service;
 
 import com.example.testproject.entity.User;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface UserService {
+    void preloadUsers();
+
     User createUserIfNotExists(String login);
+
+    Map<String, User> createUsersIfNotExist(Collection<String> logins);
 }
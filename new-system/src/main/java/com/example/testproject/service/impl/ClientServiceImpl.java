@@ -1,25 +1,26 @@
 package com.example.testproject.service.impl;
 
 import com.example.testproject.dto.ClientDto;
-import com.example.testproject.entity.ClientMapping;
-import com.example.testproject.entity.Patient;
+import com.example.testproject.dto.FullNameDto;
 import com.example.testproject.exception.ConnectionException;
 import com.example.testproject.exception.DataFetchException;
-import com.example.testproject.repository.PatientRepository;
+import com.example.testproject.repository.PatientJdbcRepository;
 import com.example.testproject.service.ClientService;
 import com.example.testproject.statistics.Statistics;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -28,37 +29,80 @@ public class ClientServiceImpl implements ClientService {
 
     private final Validator validator;
     private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
     private final Statistics statistics;
-    private final PatientRepository patientRepository;
+    private final PatientJdbcRepository patientJdbcRepository;
 
     public ClientServiceImpl(Validator validator,
                              RestTemplate restTemplate,
+                             ObjectMapper objectMapper,
                              Statistics statistics,
-                             PatientRepository patientRepository,
-                             @Value("${OLD_SYSTEM_CONTAINER_NAME:localhost}") String oldSystemHost) {
+                             PatientJdbcRepository patientJdbcRepository,
+                             @Value("${OLD_SYSTEM_ADDRESS:${OLD_SYSTEM_CONTAINER_NAME:localhost}:8080}") String oldSystemAddress) {
         this.validator = validator;
         this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
         this.statistics = statistics;
-        this.patientRepository = patientRepository;
-        CLIENT_URL = "http://" + oldSystemHost + ":8080/api/v1/clients";
+        this.patientJdbcRepository = patientJdbcRepository;
+        CLIENT_URL = "http://" + oldSystemAddress + "/api/v1/clients";
     }
 
     @Override
     public List<ClientDto> fetchClientData() throws DataFetchException, ConnectionException {
-        ResponseEntity<ClientDto[]> response;
+        // modifiable, invalid clients are removed later
+        List<ClientDto> clients = new ArrayList<>();
+        readClientData(clients::add);
+        return clients;
+    }
+
+    // clients are validated and handed over while the response is still being read
+    @Override
+    public void fetchValidClientData(Consumer<ClientDto> consumer) throws DataFetchException, ConnectionException {
+        int[] invalidClientDataCount = {0};
+
+        readClientData(client -> {
+            if (validator.validate(client).isEmpty()) {
+                consumer.accept(client);
+            } else {
+                ++invalidClientDataCount[0];
+            }
+        });
 
+        statistics.addInvalidClientData(invalidClientDataCount[0]);
+    }
+
+    // array is parsed element by element, so neither the body nor all clients are held in memory at once
+    private void readClientData(Consumer<ClientDto> consumer) throws DataFetchException, ConnectionException {
+        Boolean isCompleteArray;
+
+        // parsing is measured too, the body is read while clients are consumed
+        long fetchStart = System.nanoTime();
         try {
-            response = restTemplate.postForEntity(CLIENT_URL, null, ClientDto[].class);
+            isCompleteArray = restTemplate.execute(CLIENT_URL, HttpMethod.POST,
+                    request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+                    response -> {
+                        try (JsonParser parser = objectMapper.createParser(response.getBody())) {
+                            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                                return false;
+                            }
+                            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                                consumer.accept(parser.readValueAs(ClientDto.class));
+                            }
+                            // non object element or cut off body stops the loop before the end of the array
+                            return parser.currentToken() == JsonToken.END_ARRAY;
+                        }
+                    });
         } catch (RestClientException e) {
             log.info("Client data fetch error");
             throw new ConnectionException("Old system connection error on client fetch", e);
+        } finally {
+            statistics.recordClientFetch(System.nanoTime() - fetchStart);
         }
 
-        if (response.getBody() == null) {
+        if (!Boolean.TRUE.equals(isCompleteArray)) {
             log.info("Client data fetch error");
-            throw new DataFetchException("Client data absent in response");
+            throw new DataFetchException("Client data absent or malformed in response");
         }
-        return Arrays.asList(response.getBody());
     }
 
     @Override
@@ -78,25 +122,24 @@ public class ClientServiceImpl implements ClientService {
     }
 
     @Override
-    public int createNewClients(List<ClientDto> clients) {
-        AtomicInteger newClientCount = new AtomicInteger(0);
+    public int createNewClients(List<ClientDto> clients, Map<FullNameDto, Long> patientIdsByFullName) {
+        Map<UUID, Long> mappedPatientIds = patientJdbcRepository.findPatientIdsByClientGuids(
+                clients.stream().map(ClientDto::guid).toList()
+        );
 
+        // new clients and clients whose name now belongs to another patient
+        Map<UUID, Long> newMappings = new LinkedHashMap<>();
         clients.forEach(client -> {
-            Patient patient = patientRepository.findByFirstNameAndLastName(client.firstName(), client.lastName());
-
-            boolean newClient = patient.getClientMappings().stream()
-                    .map(ClientMapping::getId)
-                    .noneMatch(id -> client.guid().equals(id));
-
-            if (newClient) {
-                ClientMapping mapping = new ClientMapping();
-                mapping.setId(client.guid());
-                patient.addClientMapping(mapping);
-                patientRepository.save(patient);
-                newClientCount.getAndIncrement();
+            Long patientId = patientIdsByFullName.get(new FullNameDto(client.firstName(), client.lastName()));
+            if (!patientId.equals(mappedPatientIds.get(client.guid()))) {
+                newMappings.put(client.guid(), patientId);
             }
         });
 
-        return newClientCount.get();
+        if (!newMappings.isEmpty()) {
+            patientJdbcRepository.insertClientMappings(newMappings);
+        }
+
+        return newMappings.size();
     }
 }
@@ -1,127 +1,741 @@
 package com.example.testproject.service.impl;
 
+import com.example.testproject.dto.ClientCommentsDto;
 import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentBatchRequestDto;
+import com.example.testproject.dto.CommentChangesDto;
+import com.example.testproject.dto.CommentChangesRequestDto;
 import com.example.testproject.dto.CommentRequestDto;
 import com.example.testproject.dto.CommentResponseDto;
+import com.example.testproject.dto.PatientStatusDto;
 import com.example.testproject.entity.Note;
 import com.example.testproject.entity.Patient;
 import com.example.testproject.entity.Status;
 import com.example.testproject.entity.User;
+import com.example.testproject.exception.ConnectionException;
+import com.example.testproject.repository.NoteJdbcRepository;
 import com.example.testproject.repository.NoteRepository;
+import com.example.testproject.service.CommentSync;
 import com.example.testproject.service.NoteService;
 import com.example.testproject.service.PatientService;
+import com.example.testproject.service.SyncWatermarkService;
 import com.example.testproject.service.UserService;
 import com.example.testproject.statistics.Statistics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 @Slf4j
 @Service
 public class NoteServiceImpl implements NoteService {
+    private static final String COMMENT_WATERMARK = "COMMENT";
+    private static final int COMMENT_LOOKUP_SIZE = 1000;
+    private static final Duration ASYNC_FETCH_TIMEOUT = Duration.ofMinutes(1);
+    // marks the end of fetched comments for pipeline writers
+    private static final Map<UUID, List<CommentResponseDto>> NO_MORE_COMMENTS = Collections.unmodifiableMap(new HashMap<>());
+    // marks the end of note diffs for dedicated writers
+    private static final List<Note> NO_MORE_NOTES = Collections.unmodifiableList(new ArrayList<>());
+
     private final int THREAD_COUNT;
+    private final int COMMENT_BATCH_SIZE;
+    private final boolean INCREMENTAL_SYNC;
+    private final int COMMENT_CHANGES_PAGE_SIZE;
+    private final long WATERMARK_OVERLAP_SECONDS;
+    private final boolean ASYNC_FETCH;
+    private final int MAX_IN_FLIGHT_FETCHES;
+    private final int NOTE_COMMIT_CHUNK_SIZE;
+    private final boolean JDBC_WRITES;
+    private final int DB_WRITER_COUNT;
+    private final int NOTE_WRITE_QUEUE_CAPACITY;
+    private final String INITIAL_LOAD;
     private final String NOTE_URL;
+    private final String NOTE_BATCH_URL;
+    private final String NOTE_CHANGES_URL;
 
     private final Validator validator;
     private final RestTemplate restTemplate;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor noteSyncExecutor;
+    private final AsyncTaskExecutor noteWriteExecutor;
 
     private final UserService userService;
     private final PatientService patientService;
     private final NoteRepository noteRepository;
+    private final NoteJdbcRepository noteJdbcRepository;
+    private final SyncWatermarkService syncWatermarkService;
     private final Statistics statistics;
 
     public NoteServiceImpl(Validator validator,
                            RestTemplate restTemplate,
+                           HttpClient httpClient,
+                           ObjectMapper objectMapper,
+                           @Qualifier("noteSyncExecutor") AsyncTaskExecutor noteSyncExecutor,
+                           @Qualifier("noteWriteExecutor") AsyncTaskExecutor noteWriteExecutor,
                            UserService userService,
                            PatientService patientService,
                            NoteRepository noteRepository,
+                           NoteJdbcRepository noteJdbcRepository,
+                           SyncWatermarkService syncWatermarkService,
                            Statistics statistics,
-                           @Value("${OLD_SYSTEM_CONTAINER_NAME:localhost}") String oldSystemHost,
-                           @Value("${THREAD_COUNT:4}") int threadCount) {
+                           @Value("${OLD_SYSTEM_ADDRESS:${OLD_SYSTEM_CONTAINER_NAME:localhost}:8080}") String oldSystemAddress,
+                           @Value("${THREAD_COUNT:4}") int threadCount,
+                           @Value("${COMMENT_BATCH_SIZE:200}") int commentBatchSize,
+                           @Value("${INCREMENTAL_COMMENT_SYNC:true}") boolean incrementalSync,
+                           @Value("${COMMENT_CHANGES_PAGE_SIZE:5000}") int commentChangesPageSize,
+                           @Value("${COMMENT_WATERMARK_OVERLAP_SECONDS:60}") long watermarkOverlapSeconds,
+                           @Value("${ASYNC_COMMENT_FETCH:false}") boolean asyncFetch,
+                           @Value("${MAX_IN_FLIGHT_COMMENT_FETCHES:64}") int maxInFlightFetches,
+                           @Value("${NOTE_COMMIT_CHUNK_SIZE:1000}") int noteCommitChunkSize,
+                           @Value("${SYNC_WRITE_PATH:jdbc}") String writePath,
+                           @Value("${DB_WRITER_COUNT:0}") int dbWriterCount,
+                           @Value("${NOTE_WRITE_QUEUE_CAPACITY:16}") int noteWriteQueueCapacity,
+                           @Value("${INITIAL_LOAD:auto}") String initialLoad) {
         this.validator = validator;
         this.restTemplate = restTemplate;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.noteSyncExecutor = noteSyncExecutor;
+        this.noteWriteExecutor = noteWriteExecutor;
         this.userService = userService;
         this.patientService = patientService;
         this.noteRepository = noteRepository;
+        this.noteJdbcRepository = noteJdbcRepository;
+        this.syncWatermarkService = syncWatermarkService;
         this.statistics = statistics;
-        NOTE_URL = "http://" + oldSystemHost + ":8080/api/v1/notes";
+        NOTE_URL = "http://" + oldSystemAddress + "/api/v1/notes";
+        NOTE_BATCH_URL = NOTE_URL + "/batch";
+        NOTE_CHANGES_URL = NOTE_URL + "/changes";
         THREAD_COUNT = threadCount;
+        COMMENT_BATCH_SIZE = commentBatchSize;
+        INCREMENTAL_SYNC = incrementalSync;
+        COMMENT_CHANGES_PAGE_SIZE = commentChangesPageSize;
+        WATERMARK_OVERLAP_SECONDS = watermarkOverlapSeconds;
+        ASYNC_FETCH = asyncFetch;
+        MAX_IN_FLIGHT_FETCHES = maxInFlightFetches;
+        NOTE_COMMIT_CHUNK_SIZE = noteCommitChunkSize;
+        JDBC_WRITES = !"jpa".equalsIgnoreCase(writePath);
+        DB_WRITER_COUNT = dbWriterCount;
+        NOTE_WRITE_QUEUE_CAPACITY = noteWriteQueueCapacity;
+        INITIAL_LOAD = initialLoad.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void synchronizeNotesConcurrently(List<ClientDto> clients)
+            throws ExecutionException, InterruptedException, ConnectionException {
+        // client guid to patient resolution is shared by all threads of the run
+        Map<UUID, PatientStatusDto> patientStatuses = patientService.findPatientStatusesByClientGuid();
+
+        if (isInitialLoad()) {
+            runInitialLoad(clients, patientStatuses);
+            return;
+        }
+
+        if (!INCREMENTAL_SYNC) {
+            if (ASYNC_FETCH) {
+                runPipelined(clients, patientStatuses, this::fetchComments);
+            } else if (DB_WRITER_COUNT > 0) {
+                runWithWriters(clients, patientStatuses, this::fetchCommentsOfClients);
+            } else {
+                runConcurrently(clients, threadClients -> synchronizeNotes(threadClients, patientStatuses));
+            }
+            return;
+        }
+
+        CommentSync commentSync = startTrackedSync(false, ASYNC_FETCH);
+        runNoteSync(clients, patientStatuses, commentSync::fetch);
+        commentSync.complete();
+    }
+
+    // engines running their own pipelines get the same initial load and watermark handling through it,
+    // async fetch sends full fetches without holding a thread even when ASYNC_COMMENT_FETCH is off
+    @Override
+    public CommentSync startCommentSync(boolean asyncFetch) throws ConnectionException {
+        boolean initialLoad = isInitialLoad();
+        if (!INCREMENTAL_SYNC) {
+            return new UntrackedCommentSync(initialLoad, asyncFetch || ASYNC_FETCH);
+        }
+        return startTrackedSync(initialLoad, asyncFetch || ASYNC_FETCH);
+    }
+
+    // without a watermark (or for a full load) every client gets all its comments fetched by client batches,
+    // the changes feed of the whole last year would be far too much to hold at once
+    private TrackedCommentSync startTrackedSync(boolean fullLoad, boolean asyncFetch) throws ConnectionException {
+        Set<UUID> previousClients = syncWatermarkService.findSyncedClients(COMMENT_WATERMARK);
+        Optional<LocalDateTime> watermark = fullLoad
+                ? Optional.empty()
+                : syncWatermarkService.findWatermark(COMMENT_WATERMARK);
+        if (watermark.isEmpty()) {
+            return new TrackedCommentSync(fullLoad, asyncFetch, null, previousClients, Collections.emptyMap());
+        }
+
+        // overlap covers comments committed in old system later than their timestamps say,
+        // comments received twice are harmless because note update is idempotent.
+        // the feed holds only changes since the previous run, so it is kept in memory for the whole run
+        return new TrackedCommentSync(fullLoad, asyncFetch, watermark.get(), previousClients,
+                fetchCommentChanges(watermark.get().minusSeconds(WATERMARK_OVERLAP_SECONDS)));
+    }
+
+    // incremental runs differ only in where comments of a client batch come from
+    private void runNoteSync(List<ClientDto> clients,
+                             Map<UUID, PatientStatusDto> patientStatuses,
+                             Function<List<ClientDto>, CompletableFuture<Map<UUID, List<CommentResponseDto>>>> commentSource)
+            throws ExecutionException, InterruptedException {
+        if (ASYNC_FETCH) {
+            runPipelined(clients, patientStatuses, commentSource);
+        } else if (DB_WRITER_COUNT > 0) {
+            runWithWriters(clients, patientStatuses, batch -> commentSource.apply(batch).join());
+        } else {
+            runConcurrently(clients, threadClients -> synchronizeNotes(threadClients, patientStatuses,
+                    batch -> commentSource.apply(batch).join()));
+        }
+    }
+
+    private static void recordLastChange(Map<UUID, List<CommentResponseDto>> comments,
+                                         AtomicReference<LocalDateTime> lastChange) {
+        comments.values().stream()
+                .flatMap(List::stream)
+                .map(NoteServiceImpl::changedAt)
+                .max(Comparator.naturalOrder())
+                .ifPresent(time -> lastChange.accumulateAndGet(time,
+                        (current, next) -> current == null || next.isAfter(current) ? next : current));
+    }
+
+    // for purpose of this whole task fetched previously client data is used
+    @Override
+    public void synchronizeNotes(List<ClientDto> clients) {
+        synchronizeNotes(clients, patientService.findPatientStatusesByClientGuid());
+    }
+
+    @Override
+    public void synchronizeNotes(List<ClientDto> clients, Map<UUID, PatientStatusDto> patientStatuses) {
+        synchronizeNotes(clients, patientStatuses, this::fetchCommentsOfClients);
     }
 
     @Override
-    public void synchronizeNotesConcurrently(List<ClientDto> clients) throws ExecutionException, InterruptedException {
-        List<Runnable> runnables = new ArrayList<>(THREAD_COUNT);
-        int blockSize = clients.size() / THREAD_COUNT;
+    public void synchronizeNotes(List<ClientDto> clients, Map<UUID, PatientStatusDto> patientStatuses,
+                                 CommentSync commentSync) {
+        if (commentSync.isInitialLoad()) {
+            loadNotes(clients, patientStatuses, batch -> commentSync.fetch(batch).join());
+        } else {
+            synchronizeNotes(clients, patientStatuses, batch -> commentSync.fetch(batch).join());
+        }
+    }
+
+    @Override
+    public Map<UUID, List<CommentResponseDto>> fetchCommentChanges(LocalDateTime since) throws ConnectionException {
+        Map<UUID, List<CommentResponseDto>> commentsByClient = new HashMap<>();
+
+        LocalDateTime cursorTime = since;
+        UUID cursorId = null;
+        boolean hasMore = true;
+
+        while (hasMore) {
+            CommentChangesRequestDto request = CommentChangesRequestDto.builder()
+                    .since(cursorTime)
+                    .afterId(cursorId)
+                    .dateFrom(LocalDate.now().minusYears(1))
+                    .limit(COMMENT_CHANGES_PAGE_SIZE)
+                    .build();
+
+            ResponseEntity<CommentChangesDto> response;
+
+            long fetchStart = System.nanoTime();
+            try {
+                response = restTemplate.postForEntity(NOTE_CHANGES_URL, request, CommentChangesDto.class);
+            } catch (RestClientException e) {
+                log.info("Comment changes fetch error");
+                throw new ConnectionException("Old system connection error on comment changes fetch", e);
+            } finally {
+                statistics.recordCommentFetch(System.nanoTime() - fetchStart);
+            }
+
+            CommentChangesDto page = response.getBody();
+            if (page == null || page.comments() == null) {
+                break;
+            }
+
+            statistics.addFetchedComments(page.comments().size());
+            for (CommentResponseDto comment : page.comments()) {
+                List<CommentResponseDto> clientComments = commentsByClient.get(comment.clientGuid());
+                if (clientComments == null) {
+                    clientComments = commentsByClient.computeIfAbsent(comment.clientGuid(), guid -> new ArrayList<>());
+                }
+                clientComments.add(comment);
+            }
+
+            cursorTime = page.lastChangedAt();
+            cursorId = page.lastId();
+            hasMore = page.hasMore();
+        }
 
+        return commentsByClient;
+    }
+
+    private void runConcurrently(List<ClientDto> clients, Consumer<List<ClientDto>> worker)
+            throws ExecutionException, InterruptedException {
+        // workers take small chunks from a shared queue, so one heavy part of clients doesn't leave others idle
+        List<ClientDto> distinctClients = clients.stream()
+                .filter(distinctByKey(ClientDto::guid))
+                .toList();
+        Queue<List<ClientDto>> chunks = new ConcurrentLinkedQueue<>();
+        for (int from = 0; from < distinctClients.size(); from += COMMENT_BATCH_SIZE) {
+            chunks.add(distinctClients.subList(from, Math.min(from + COMMENT_BATCH_SIZE, distinctClients.size())));
+        }
+
+        long runStart = System.nanoTime();
+
+        List<Future<WorkerUtilization>> results = new ArrayList<>(THREAD_COUNT);
         for (int i = 0; i < THREAD_COUNT; i++) {
-            final boolean lastBlock = (i == THREAD_COUNT - 1);
-            final int currentBlock = i;
-            runnables.add(() -> {
-                List<ClientDto> threadClients;
-                if (lastBlock) {
-                    threadClients = clients.subList(currentBlock * blockSize, clients.size());
-                } else {
-                    threadClients = clients.subList(currentBlock * blockSize, (currentBlock + 1) * blockSize);
+            results.add(noteSyncExecutor.submit(() -> {
+                String workerName = Thread.currentThread().getName();
+                int processedChunks = 0;
+                long busyNanos = 0;
+                List<ClientDto> chunk;
+                while ((chunk = chunks.poll()) != null) {
+                    long chunkStart = System.nanoTime();
+                    worker.accept(chunk);
+                    long chunkNanos = System.nanoTime() - chunkStart;
+                    statistics.recordWorkerChunk(workerName, chunkNanos);
+                    busyNanos += chunkNanos;
+                    ++processedChunks;
+                }
+                return new WorkerUtilization(workerName, processedChunks, busyNanos);
+            }));
+        }
+
+        // every worker is awaited before a failure is rethrown, so none of them is left running
+        List<WorkerUtilization> utilizations = new ArrayList<>(THREAD_COUNT);
+        ExecutionException workerFailure = null;
+        for (Future<WorkerUtilization> result : results) {
+            try {
+                utilizations.add(result.get());
+            } catch (ExecutionException e) {
+                workerFailure = workerFailure == null ? e : workerFailure;
+            }
+        }
+        if (workerFailure != null) {
+            throw workerFailure;
+        }
+
+        long runNanos = Math.max(System.nanoTime() - runStart, 1);
+        utilizations.forEach(utilization -> statistics.recordWorkerUtilization(utilization.worker(),
+                (double) utilization.busyNanos() / runNanos));
+        utilizations.forEach(utilization -> log.info("Note worker {}: chunks:{}, busy:{} ms, utilization:{}%",
+                utilization.worker(), utilization.processedChunks(), utilization.busyNanos() / 1_000_000,
+                utilization.busyNanos() * 100 / runNanos));
+    }
+
+    // empty note table means nothing has to be compared or merged, 'always' is for tables emptied by hand
+    private boolean isInitialLoad() {
+        return switch (INITIAL_LOAD) {
+            case "always" -> true;
+            case "never" -> false;
+            default -> noteJdbcRepository.isEmpty();
+        };
+    }
+
+    // comments are turned into notes without any lookup and copied in bulk
+    private void runInitialLoad(List<ClientDto> clients, Map<UUID, PatientStatusDto> patientStatuses)
+            throws ExecutionException, InterruptedException, ConnectionException {
+        log.info("Running initial note load");
+        // next incremental run continues from loaded comments
+        CommentSync commentSync = INCREMENTAL_SYNC ? startTrackedSync(true, ASYNC_FETCH) : null;
+
+        runConcurrently(clients, threadClients -> loadNotes(threadClients, patientStatuses, commentSync == null
+                ? this::fetchCommentsOfClients
+                : batch -> commentSync.fetch(batch).join()));
+
+        if (commentSync != null) {
+            commentSync.complete();
+        }
+    }
+
+    private void loadNotes(List<ClientDto> clients,
+                           Map<UUID, PatientStatusDto> patientStatuses,
+                           Function<List<ClientDto>, Map<UUID, List<CommentResponseDto>>> commentSource) {
+        List<ClientDto> activeClients = findActiveClients(clients, patientStatuses);
+        if (activeClients.isEmpty()) {
+            return;
+        }
+
+        writeNotes(buildNewNotes(commentSource.apply(activeClients), patientStatuses), noteJdbcRepository::copyNotes);
+    }
+
+    // fetch workers only compute note diffs, a few dedicated writers commit them in large ordered transactions
+    private void runWithWriters(List<ClientDto> clients,
+                                Map<UUID, PatientStatusDto> patientStatuses,
+                                Function<List<ClientDto>, Map<UUID, List<CommentResponseDto>>> commentSource)
+            throws ExecutionException, InterruptedException {
+        BlockingQueue<List<Note>> pendingNotes = new ArrayBlockingQueue<>(NOTE_WRITE_QUEUE_CAPACITY);
+        AtomicReference<RuntimeException> writeFailure = new AtomicReference<>();
+
+        List<Future<?>> writers = new ArrayList<>(DB_WRITER_COUNT);
+        for (int i = 0; i < DB_WRITER_COUNT; i++) {
+            writers.add(noteWriteExecutor.submit(() -> drainNotes(pendingNotes, writeFailure)));
+        }
+
+        try {
+            runConcurrently(clients, threadClients -> {
+                List<ClientDto> activeClients = findActiveClients(threadClients, patientStatuses);
+                if (activeClients.isEmpty()) {
+                    return;
+                }
+
+                List<Note> notes = findNewAndUpdatedNotes(commentSource.apply(activeClients), patientStatuses);
+                try {
+                    // full queue slows fetching down to the pace of writers
+                    pendingNotes.put(notes);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for note writers", e);
                 }
-                synchronizeNotes(threadClients);
             });
+        } finally {
+            for (int i = 0; i < DB_WRITER_COUNT; i++) {
+                pendingNotes.put(NO_MORE_NOTES);
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
         }
 
-        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        if (writeFailure.get() != null) {
+            throw new ExecutionException("Note writing failed", writeFailure.get());
+        }
+    }
 
-        List<? extends Future<?>> results = runnables.stream()
-                .map(executorService::submit)
-                .toList();
+    private Void drainNotes(BlockingQueue<List<Note>> pendingNotes, AtomicReference<RuntimeException> writeFailure)
+            throws InterruptedException {
+        List<Note> batch = new ArrayList<>();
+        List<Note> notes;
+        while ((notes = pendingNotes.take()) != NO_MORE_NOTES) {
+            batch.addAll(notes);
 
-        executorService.shutdown();
+            // batch grows while fetchers are ahead, writer without anything else to do commits what it has
+            if (batch.size() >= NOTE_COMMIT_CHUNK_SIZE || pendingNotes.isEmpty()) {
+                writeOrdered(batch, writeFailure);
+                batch = new ArrayList<>();
+            }
+        }
+        writeOrdered(batch, writeFailure);
+        return null;
+    }
+
+    private void writeOrdered(List<Note> notes, AtomicReference<RuntimeException> writeFailure) {
+        // writers keep draining after failure, otherwise fetchers would wait for queue space forever
+        if (notes.isEmpty() || writeFailure.get() != null) {
+            return;
+        }
 
-        for (int thread = 0; thread < THREAD_COUNT; thread++) {
-            results.get(thread).get();
+        // rows are locked in the same order by every writer, so concurrent transactions don't deadlock
+        notes.sort(Comparator.comparing(Note::getCommentId));
+        try {
+            saveNotes(notes);
+        } catch (RuntimeException e) {
+            writeFailure.compareAndSet(null, e);
         }
     }
 
-    // for purpose of this whole task fetched previously client data is used
+    // pipeline of non-blocking fetches and a fixed set of writers, the calling thread only sends requests
+    private void runPipelined(List<ClientDto> clients,
+                              Map<UUID, PatientStatusDto> patientStatuses,
+                              Function<List<ClientDto>, CompletableFuture<Map<UUID, List<CommentResponseDto>>>> commentSource)
+            throws ExecutionException, InterruptedException {
+        List<ClientDto> activeClients = findActiveClients(clients, patientStatuses);
+
+        // permit is returned when fetched comments are written, so requests in flight
+        // and comments waiting for writers are bounded together and the queue never overflows
+        Semaphore permits = new Semaphore(MAX_IN_FLIGHT_FETCHES);
+        BlockingQueue<Map<UUID, List<CommentResponseDto>>> fetchedComments =
+                new ArrayBlockingQueue<>(MAX_IN_FLIGHT_FETCHES + THREAD_COUNT);
+        AtomicReference<RuntimeException> writeFailure = new AtomicReference<>();
+
+        List<Future<?>> writers = new ArrayList<>(THREAD_COUNT);
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            writers.add(noteSyncExecutor.submit(() -> {
+                Map<UUID, List<CommentResponseDto>> comments;
+                while ((comments = fetchedComments.take()) != NO_MORE_COMMENTS) {
+                    try {
+                        // writers keep draining after failure, otherwise fetching would wait for permits forever
+                        if (writeFailure.get() == null) {
+                            saveNotes(findNewAndUpdatedNotes(comments, patientStatuses));
+                        }
+                    } catch (RuntimeException e) {
+                        writeFailure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        List<CompletableFuture<?>> fetches = new ArrayList<>();
+        for (int from = 0; from < activeClients.size(); from += COMMENT_BATCH_SIZE) {
+            List<ClientDto> batch = activeClients.subList(from,
+                    Math.min(from + COMMENT_BATCH_SIZE, activeClients.size()));
+
+            permits.acquire();
+            fetches.add(commentSource.apply(batch).handle((comments, e) -> {
+                if (e != null) {
+                    log.error("Comment fetch error. Client count:{}", batch.size(), e);
+                    statistics.addFailedCommentFetches(1);
+                }
+                fetchedComments.add(comments == null ? Collections.emptyMap() : comments);
+                return null;
+            }));
+        }
+
+        CompletableFuture.allOf(fetches.toArray(CompletableFuture[]::new)).join();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            fetchedComments.put(NO_MORE_COMMENTS);
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+
+        if (writeFailure.get() != null) {
+            throw new ExecutionException("Note writing failed", writeFailure.get());
+        }
+    }
+
+    private void synchronizeNotes(List<ClientDto> clients,
+                                  Map<UUID, PatientStatusDto> patientStatuses,
+                                  Function<List<ClientDto>, Map<UUID, List<CommentResponseDto>>> commentSource) {
+        List<ClientDto> activeClients = findActiveClients(clients, patientStatuses);
+
+        List<Note> pendingNotes = new ArrayList<>();
+
+        // comments are requested for several clients at once to save round trips to old system
+        for (int from = 0; from < activeClients.size(); from += COMMENT_BATCH_SIZE) {
+            List<ClientDto> batch = activeClients.subList(from,
+                    Math.min(from + COMMENT_BATCH_SIZE, activeClients.size()));
+
+            pendingNotes.addAll(findNewAndUpdatedNotes(commentSource.apply(batch), patientStatuses));
+
+            // every chunk is committed on its own, so memory stays flat and a late failure keeps earlier chunks
+            if (pendingNotes.size() >= NOTE_COMMIT_CHUNK_SIZE) {
+                saveNotes(pendingNotes);
+                pendingNotes = new ArrayList<>();
+            }
+        }
+
+        saveNotes(pendingNotes);
+    }
+
+    private List<ClientDto> findActiveClients(List<ClientDto> clients, Map<UUID, PatientStatusDto> patientStatuses) {
+        List<ClientDto> distinctClients = clients.stream()
+                .filter(distinctByKey(ClientDto::guid))
+                .toList();
+
+        // notes of inactive patients are not synchronized, so their comments are not requested at all
+        List<ClientDto> activeClients = distinctClients.stream()
+                .filter(client -> isActive(patientStatuses.get(client.guid())))
+                .toList();
+        statistics.addSkippedCommentFetches(distinctClients.size() - activeClients.size());
+
+        return activeClients;
+    }
+
     @Override
-    public void synchronizeNotes(List<ClientDto> clients) {
-        Map<UUID, String> agenciesByClientId = new HashMap<>(clients.size());
-        clients.forEach(client -> agenciesByClientId.put(client.guid(), client.agency()));
+    public List<Note> findNewAndUpdatedNotes(Map<UUID, List<CommentResponseDto>> commentsByClient,
+                                             Map<UUID, PatientStatusDto> patientStatuses) {
+        List<Map.Entry<CommentResponseDto, Long>> activeComments = findActiveComments(commentsByClient, patientStatuses);
+
+        // stored fingerprints of the whole batch are resolved at once, unchanged comments are skipped without loading notes
+        Map<UUID, String> storedFingerprints = noteJdbcRepository.findFingerprintsByCommentIds(activeComments.stream()
+                .map(entry -> entry.getKey().guid())
+                .toList());
+
+        List<ChangedComment> changedComments = new ArrayList<>();
+        activeComments.forEach(entry -> {
+            String fingerprint = fingerprint(entry.getKey(), entry.getValue());
+            if (!fingerprint.equals(storedFingerprints.get(entry.getKey().guid()))) {
+                changedComments.add(new ChangedComment(entry.getKey(), entry.getValue(), fingerprint));
+            }
+        });
+
+        if (changedComments.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // existing notes of changed comments are resolved at once
+        Map<UUID, Note> existingNotes = findNotesByCommentIds(changedComments.stream()
+                .map(changed -> changed.comment().guid())
+                .filter(storedFingerprints::containsKey)
+                .toList());
+
+        // unknown users of the whole batch are created at once
+        Map<String, User> users = userService.createUsersIfNotExist(changedComments.stream()
+                .map(changed -> changed.comment().loggedUser())
+                .collect(Collectors.toSet()));
 
         List<Note> newAndUpdatedNotes = new ArrayList<>();
+        changedComments.forEach(changed -> {
+            CommentResponseDto comment = changed.comment();
+            Long patientId = changed.patientId();
+            String fingerprint = changed.fingerprint();
+            User user = users.get(comment.loggedUser());
+
+            Note existingNote = existingNotes.get(comment.guid());
+            if (existingNote == null) {
+                Note newNote = buildNewNote(comment, user, patientService.getPatientReference(patientId));
+                newNote.setFingerprint(fingerprint);
+                newAndUpdatedNotes.add(newNote);
+                statistics.addNewNotes(1);
+            } else {
+                updateNodeIfNeeded(comment, user, patientId, existingNote);
+                // written even when nothing else changed, so the same comment is skipped next time
+                existingNote.setFingerprint(fingerprint);
+                newAndUpdatedNotes.add(existingNote);
+            }
+        });
+
+        return newAndUpdatedNotes;
+    }
+
+    // every comment is expected to be absent, so notes are only built
+    private List<Note> buildNewNotes(Map<UUID, List<CommentResponseDto>> commentsByClient,
+                                     Map<UUID, PatientStatusDto> patientStatuses) {
+        List<Map.Entry<CommentResponseDto, Long>> activeComments = findActiveComments(commentsByClient, patientStatuses);
+
+        Map<String, User> users = userService.createUsersIfNotExist(activeComments.stream()
+                .map(entry -> entry.getKey().loggedUser())
+                .collect(Collectors.toSet()));
 
-        agenciesByClientId.forEach((clientGuid, agency) -> {
-            List<CommentResponseDto> commentResponse = fetchClientComments(clientGuid, agency);
+        List<Note> newNotes = new ArrayList<>(activeComments.size());
+        activeComments.forEach(entry -> {
+            Note newNote = buildNewNote(entry.getKey(), users.get(entry.getKey().loggedUser()),
+                    patientService.getPatientReference(entry.getValue()));
+            newNote.setFingerprint(fingerprint(entry.getKey(), entry.getValue()));
+            newNotes.add(newNote);
+        });
+        statistics.addNewNotes(newNotes.size());
+
+        return newNotes;
+    }
+
+    // valid comments of active patients paired with patient id
+    private List<Map.Entry<CommentResponseDto, Long>> findActiveComments(Map<UUID, List<CommentResponseDto>> commentsByClient,
+                                                                         Map<UUID, PatientStatusDto> patientStatuses) {
+        List<CommentResponseDto> comments = new ArrayList<>();
+        commentsByClient.values().forEach(commentResponse -> {
             filterInvalidCommentData(commentResponse);
+            comments.addAll(commentResponse);
+        });
 
-            commentResponse.forEach(comment -> {
-                Patient patient = patientService.findPatientByClientGuid(comment.clientGuid());
-                if (patient.getStatus().equals(Status.ACTIVE)) {
-                    User user = userService.createUserIfNotExists(comment.loggedUser());
-
-                    Note note;
-                    if (noteRepository.existsByCommentId(comment.guid())) {
-                        note = updateNodeIfNeeded(comment, user, patient, statistics);
-                    } else {
-                        note = buildNewNote(comment, user, patient);
-                        statistics.addNewNotes(1);
-                    }
+        List<Map.Entry<CommentResponseDto, Long>> activeComments = new ArrayList<>();
+        comments.forEach(comment -> {
+            PatientStatusDto patient = patientStatuses.get(comment.clientGuid());
+            if (isActive(patient)) {
+                activeComments.add(new AbstractMap.SimpleEntry<>(comment, patient.patientId()));
+            }
+        });
 
-                    newAndUpdatedNotes.add(note);
-                }
-            });
+        return activeComments;
+    }
+
+    @Override
+    public void saveNotes(List<Note> notes) {
+        // repository path merges detached notes with a select each and dirty checks them, jdbc path only upserts
+        writeNotes(notes, JDBC_WRITES ? noteJdbcRepository::upsertNotes : noteRepository::saveAll);
+    }
+
+    private void writeNotes(List<Note> notes, Consumer<List<Note>> write) {
+        long writeStart = System.nanoTime();
+
+        write.accept(notes);
+
+        statistics.addNoteWrite(notes.size(), System.nanoTime() - writeStart);
+    }
+
+    private Map<UUID, Note> findNotesByCommentIds(List<UUID> commentIds) {
+        Map<UUID, Note> notesByCommentId = new HashMap<>(commentIds.size());
+
+        // bind parameter count of one query is limited
+        for (int from = 0; from < commentIds.size(); from += COMMENT_LOOKUP_SIZE) {
+            noteRepository.findByCommentIdIn(commentIds.subList(from, Math.min(from + COMMENT_LOOKUP_SIZE, commentIds.size())))
+                    .forEach(note -> notesByCommentId.put(note.getCommentId(), note));
+        }
+
+        return notesByCommentId;
+    }
+
+    private Map<UUID, List<CommentResponseDto>> fetchCommentsOfClients(List<ClientDto> clients) {
+        return fetchClientCommentsBatch(clients.stream()
+                .map(ClientDto::guid)
+                .toList());
+    }
+
+    private CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetchComments(List<ClientDto> clients) {
+        return fetchComments(clients, ASYNC_FETCH);
+    }
+
+    private CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetchComments(List<ClientDto> clients,
+                                                                              boolean asyncFetch) {
+        return asyncFetch
+                ? fetchClientCommentsBatchAsync(clients.stream().map(ClientDto::guid).toList())
+                : CompletableFuture.completedFuture(fetchCommentsOfClients(clients));
+    }
+
+    private CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetchCommentsWithChanges(
+            List<ClientDto> batch, Set<UUID> syncedClients, Map<UUID, List<CommentResponseDto>> changedComments,
+            boolean asyncFetch) {
+        // comments older than the watermark are not in the changes feed, so only clients synchronized
+        // up to it are covered, new ones and ones skipped before (inactive, unmapped, invalid) are not
+        Map<Boolean, List<ClientDto>> clientsByCoverage = batch.stream()
+                .collect(Collectors.partitioningBy(client -> syncedClients.contains(client.guid())));
+
+        Map<UUID, List<CommentResponseDto>> comments = new LinkedHashMap<>();
+        // comments of covered clients are already fetched with the changes feed
+        statistics.addProcessedClients(clientsByCoverage.get(true).size());
+        clientsByCoverage.get(true).forEach(client -> {
+            List<CommentResponseDto> clientComments = changedComments.get(client.guid());
+            if (clientComments != null) {
+                comments.put(client.guid(), new ArrayList<>(clientComments));
+            }
         });
 
-        noteRepository.saveAll(newAndUpdatedNotes);
+        if (clientsByCoverage.get(false).isEmpty()) {
+            return CompletableFuture.completedFuture(comments);
+        }
+        return fetchComments(clientsByCoverage.get(false), asyncFetch).thenApply(fetched -> {
+            comments.putAll(fetched);
+            return comments;
+        });
     }
 
     @Override
@@ -135,14 +749,114 @@ public class NoteServiceImpl implements NoteService {
 
         ResponseEntity<CommentResponseDto[]> response;
 
+        long fetchStart = System.nanoTime();
         try {
             response = restTemplate.postForEntity(NOTE_URL, request, CommentResponseDto[].class);
         } catch (RestClientException e) {
             log.error("Old system connection error on comment fetch. Client guid:{}, agency:{}", clientGuid, agency);
+            statistics.addFailedCommentFetches(1);
+            return Collections.emptyList();
+        } finally {
+            statistics.recordCommentFetch(System.nanoTime() - fetchStart);
+        }
+
+        if (response.getBody() == null) {
             return Collections.emptyList();
         }
+        statistics.addFetchedComments(response.getBody().length);
+        return Arrays.asList(response.getBody());
+    }
+
+    @Override
+    public Map<UUID, List<CommentResponseDto>> fetchClientCommentsBatch(List<UUID> clientGuids) {
+        CommentBatchRequestDto request = CommentBatchRequestDto.builder()
+                .clientGuids(clientGuids)
+                .dateFrom(LocalDate.now().minusYears(1))
+                .dateTo(LocalDate.now())
+                .build();
+
+        ResponseEntity<ClientCommentsDto[]> response;
+
+        long fetchStart = System.nanoTime();
+        try {
+            response = restTemplate.postForEntity(NOTE_BATCH_URL, request, ClientCommentsDto[].class);
+        } catch (RestClientException e) {
+            log.error("Old system connection error on batch comment fetch. Client count:{}", clientGuids.size());
+            statistics.addFailedCommentFetches(1);
+            return Collections.emptyMap();
+        } finally {
+            statistics.recordCommentFetch(System.nanoTime() - fetchStart);
+            statistics.addProcessedClients(clientGuids.size());
+        }
 
-        return response.getBody() == null ? Collections.emptyList() : Arrays.asList(response.getBody());
+        return toCommentsByClient(response.getBody());
+    }
+
+    // request is sent without holding a thread, response is parsed by http client threads
+    @Override
+    public CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetchClientCommentsBatchAsync(List<UUID> clientGuids) {
+        CommentBatchRequestDto request = CommentBatchRequestDto.builder()
+                .clientGuids(clientGuids)
+                .dateFrom(LocalDate.now().minusYears(1))
+                .dateTo(LocalDate.now())
+                .build();
+
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(NOTE_BATCH_URL))
+                    .timeout(ASYNC_FETCH_TIMEOUT)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long fetchStart = System.nanoTime();
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpStatus.OK.value()) {
+                        throw new CompletionException(new IOException("Unexpected status " + response.statusCode()));
+                    }
+                    // jdk client doesn't decompress by itself
+                    boolean isGzip = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)
+                            .filter("gzip"::equalsIgnoreCase)
+                            .isPresent();
+                    try (InputStream body = isGzip ? new GZIPInputStream(response.body()) : response.body()) {
+                        return toCommentsByClient(objectMapper.readValue(body, ClientCommentsDto[].class));
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .whenComplete((comments, e) -> {
+                    statistics.recordCommentFetch(System.nanoTime() - fetchStart);
+                    statistics.addProcessedClients(clientGuids.size());
+                })
+                .exceptionally(e -> {
+                    log.error("Old system connection error on async batch comment fetch. Client count:{}",
+                            clientGuids.size());
+                    statistics.addFailedCommentFetches(1);
+                    return Collections.emptyMap();
+                });
+    }
+
+    private Map<UUID, List<CommentResponseDto>> toCommentsByClient(ClientCommentsDto[] body) {
+        if (body == null) {
+            return Collections.emptyMap();
+        }
+
+        // lists are copied to be modifiable by further filtering
+        Map<UUID, List<CommentResponseDto>> commentsByClient = new LinkedHashMap<>();
+        int fetchedComments = 0;
+        for (ClientCommentsDto clientComments : body) {
+            if (clientComments.comments() != null) {
+                commentsByClient.put(clientComments.clientGuid(), new ArrayList<>(clientComments.comments()));
+                fetchedComments += clientComments.comments().size();
+            }
+        }
+        statistics.addFetchedComments(fetchedComments);
+        return commentsByClient;
     }
 
     @Override
@@ -172,9 +886,8 @@ public class NoteServiceImpl implements NoteService {
                 .build();
     }
 
-    private Note updateNodeIfNeeded(CommentResponseDto comment, User commentUser, Patient patient, Statistics statistics) {
-        Note existingNote = noteRepository.findByCommentId(comment.guid());
-
+    // returns true when existing note was changed
+    boolean updateNodeIfNeeded(CommentResponseDto comment, User commentUser, Long patientId, Note existingNote) {
         boolean isUpdated = false;
         boolean isCommentNewer = (existingNote.getModifiedAt() == null && comment.modifiedDateTime() != null)
                 || (existingNote.getModifiedAt() != null && comment.modifiedDateTime() != null
@@ -187,8 +900,8 @@ public class NoteServiceImpl implements NoteService {
         }
 
         // note was reassigned to different client representing different patient
-        if (!existingNote.getPatient().getId().equals(patient.getId())) {
-            existingNote.setPatient(patient);
+        if (!existingNote.getPatient().getId().equals(patientId)) {
+            existingNote.setPatient(patientService.getPatientReference(patientId));
             isUpdated = true;
         }
 
@@ -221,6 +934,129 @@ public class NoteServiceImpl implements NoteService {
             statistics.addUpdatedNotes(1);
         }
 
-        return existingNote;
+        return isUpdated;
+    }
+
+    // covers everything note is built from, fields are separated so they cannot shift into each other
+    static String fingerprint(CommentResponseDto comment, Long patientId) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        for (String field : List.of(
+                String.valueOf(comment.comments()),
+                String.valueOf(comment.createdDateTime()),
+                String.valueOf(comment.modifiedDateTime()),
+                String.valueOf(comment.loggedUser()),
+                String.valueOf(patientId))) {
+            digest.update(field.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static boolean isActive(PatientStatusDto patient) {
+        return patient != null && patient.status().equals(Status.ACTIVE);
+    }
+
+    private static LocalDateTime changedAt(CommentResponseDto comment) {
+        return comment.modifiedDateTime() != null && comment.modifiedDateTime().isAfter(comment.createdDateTime())
+                ? comment.modifiedDateTime()
+                : comment.createdDateTime();
+    }
+
+    private static <T> Predicate<T> distinctByKey(Function<? super T, ?> keyExtractor) {
+        Set<Object> seen = new HashSet<>();
+        return item -> seen.add(keyExtractor.apply(item));
+    }
+
+    private record ChangedComment(CommentResponseDto comment, Long patientId, String fingerprint) {
+    }
+
+    // comments of one incremental run and what is saved after it: clients synchronized up to the watermark
+    // get their changes from the feed, other clients get all their comments fetched
+    private class TrackedCommentSync implements CommentSync {
+        private final boolean initialLoad;
+        private final boolean asyncFetch;
+        private final LocalDateTime watermark;
+        private final Set<UUID> previousClients;
+        private final Map<UUID, List<CommentResponseDto>> changedComments;
+        private final Set<UUID> syncedClients = ConcurrentHashMap.newKeySet();
+        private final AtomicReference<LocalDateTime> lastChange = new AtomicReference<>();
+        private final long failedFetchesBefore = statistics.getFailedCommentFetches().sum();
+
+        private TrackedCommentSync(boolean initialLoad, boolean asyncFetch, LocalDateTime watermark,
+                                   Set<UUID> previousClients, Map<UUID, List<CommentResponseDto>> changedComments) {
+            this.initialLoad = initialLoad;
+            this.asyncFetch = asyncFetch;
+            this.watermark = watermark;
+            this.previousClients = previousClients;
+            this.changedComments = changedComments;
+            recordLastChange(changedComments, lastChange);
+        }
+
+        @Override
+        public boolean isInitialLoad() {
+            return initialLoad;
+        }
+
+        // clients are expected to be active ones, only they are synchronized
+        @Override
+        public CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetch(List<ClientDto> clients) {
+            clients.forEach(client -> syncedClients.add(client.guid()));
+            if (watermark != null) {
+                // only the feed moves the watermark, full fetches run later and may see changes of covered clients
+                return fetchCommentsWithChanges(clients, previousClients, changedComments, asyncFetch);
+            }
+            return fetchComments(clients, asyncFetch).thenApply(comments -> {
+                recordLastChange(comments, lastChange);
+                return comments;
+            });
+        }
+
+        // nothing is saved when some comments were not received, they are fetched again next time
+        @Override
+        public void complete() {
+            if (statistics.getFailedCommentFetches().sum() != failedFetchesBefore) {
+                return;
+            }
+            // clients go first: when the watermark is not saved after them, they are fully fetched up to the old one anyway
+            syncWatermarkService.saveSyncedClients(COMMENT_WATERMARK, previousClients, syncedClients);
+            if (lastChange.get() != null) {
+                syncWatermarkService.saveWatermark(COMMENT_WATERMARK, lastChange.get());
+            }
+        }
+    }
+
+    // without incremental sync every client gets all its comments fetched and nothing is kept for the next run
+    private class UntrackedCommentSync implements CommentSync {
+        private final boolean initialLoad;
+        private final boolean asyncFetch;
+
+        private UntrackedCommentSync(boolean initialLoad, boolean asyncFetch) {
+            this.initialLoad = initialLoad;
+            this.asyncFetch = asyncFetch;
+        }
+
+        @Override
+        public boolean isInitialLoad() {
+            return initialLoad;
+        }
+
+        @Override
+        public CompletableFuture<Map<UUID, List<CommentResponseDto>>> fetch(List<ClientDto> clients) {
+            return fetchComments(clients, asyncFetch);
+        }
+
+        @Override
+        public void complete() {
+        }
+    }
+
+    private record WorkerUtilization(String worker, int processedChunks, long busyNanos) {
     }
 }
@@ -2,16 +2,21 @@ package com.example.testproject.service.impl;
 
 import com.example.testproject.dto.ClientDto;
 import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
 import com.example.testproject.entity.ClientMapping;
 import com.example.testproject.entity.Patient;
 import com.example.testproject.entity.Status;
+import com.example.testproject.repository.PatientJdbcRepository;
 import com.example.testproject.repository.PatientRepository;
 import com.example.testproject.service.ClientService;
 import com.example.testproject.service.PatientService;
 import com.example.testproject.statistics.Statistics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -19,31 +24,45 @@ import java.util.stream.Collectors;
 
 @Service
 public class PatientServiceImpl implements PatientService {
+    private final boolean JDBC_WRITES;
+
     private final PatientRepository patientRepository;
+    private final PatientJdbcRepository patientJdbcRepository;
     private final ClientService clientService;
     private final Statistics statistics;
 
     public PatientServiceImpl(PatientRepository patientRepository,
+                              PatientJdbcRepository patientJdbcRepository,
                               ClientService clientService,
-                              Statistics statistics) {
+                              Statistics statistics,
+                              @Value("${SYNC_WRITE_PATH:jdbc}") String writePath) {
         this.patientRepository = patientRepository;
+        this.patientJdbcRepository = patientJdbcRepository;
         this.clientService = clientService;
         this.statistics = statistics;
+        JDBC_WRITES = !"jpa".equalsIgnoreCase(writePath);
     }
 
     @Override
     public void synchronizePatients(List<ClientDto> clients) {
+        // all clients are matched against one preloaded index instead of a query per client
+        synchronizePatients(clients, findPatientIdsByFullName());
+    }
+
+    // index may be shared by several callers, created patients are added to it
+    @Override
+    public void synchronizePatients(List<ClientDto> clients, Map<FullNameDto, Long> patientIdsByFullName) {
         Map<Boolean, List<ClientDto>> clientsByExistence = clients.stream()
                 .collect(Collectors.partitioningBy(
-                        client -> patientRepository.existsByFirstNameAndLastName(client.firstName(), client.lastName())
+                        client -> patientIdsByFullName.containsKey(new FullNameDto(client.firstName(), client.lastName()))
                 ));
 
         clientsByExistence.forEach((isExist, clientData) -> {
             if (isExist) {
-                int count = clientService.createNewClients(clientData);
+                int count = clientService.createNewClients(clientData, patientIdsByFullName);
                 statistics.addNewClients(count);
             } else {
-                int count = createNewPatients(clientData);
+                int count = createNewPatients(clientData, patientIdsByFullName);
                 statistics.addNewPatients(count);
             }
         });
@@ -51,6 +70,11 @@ public class PatientServiceImpl implements PatientService {
 
     @Override
     public int createNewPatients(List<ClientDto> clients) {
+        return createNewPatients(clients, new HashMap<>());
+    }
+
+    @Override
+    public int createNewPatients(List<ClientDto> clients, Map<FullNameDto, Long> patientIdsByFullName) {
         List<Patient> newPatients = new ArrayList<>();
 
         Map<FullNameDto, List<ClientDto>> clientsByFullName = clients.stream()
@@ -82,13 +106,39 @@ public class PatientServiceImpl implements PatientService {
             newPatients.add(newPatient);
         });
 
-        patientRepository.saveAll(newPatients);
+        // repository path merges every client mapping with a select because its id is assigned
+        if (JDBC_WRITES) {
+            patientJdbcRepository.insertPatients(newPatients);
+        } else {
+            patientRepository.saveAll(newPatients);
+        }
+
+        // ids are assigned on both write paths
+        newPatients.forEach(patient -> patientIdsByFullName.put(
+                new FullNameDto(patient.getFirstName(), patient.getLastName()), patient.getId()));
 
         return newPatients.size();
     }
 
     @Override
-    public Patient findPatientByClientGuid(UUID clientGuid) {
-        return patientRepository.findByClientGuid(clientGuid);
+    public Map<FullNameDto, Long> findPatientIdsByFullName() {
+        return patientJdbcRepository.findPatientIdsByFullName();
+    }
+
+    // one bulk read per synchronization run instead of a patient query per comment
+    @Override
+    public Map<UUID, PatientStatusDto> findPatientStatusesByClientGuid() {
+        return patientJdbcRepository.findPatientStatusesByClientGuid();
+    }
+
+    @Override
+    public Map<UUID, PatientStatusDto> findPatientStatusesByClientGuids(Collection<UUID> clientGuids) {
+        return patientJdbcRepository.findPatientStatusesByClientGuids(clientGuids);
+    }
+
+    // proxy with id only, nothing is loaded
+    @Override
+    public Patient getPatientReference(Long patientId) {
+        return patientRepository.getReferenceById(patientId);
     }
 }
@@ -0,0 +1,185 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentResponseDto;
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
+import com.example.testproject.entity.Status;
+import com.example.testproject.service.*;
+import com.example.testproject.statistics.ConnectionPoolStatistics;
+import com.example.testproject.statistics.Statistics;
+import com.example.testproject.statistics.Statistics.Phase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// stages overlap in time, each of them asks previous one only for as many chunks as it can take
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "SYNC_ENGINE", havingValue = "reactive")
+public class ReactiveSynchronizationServiceImpl implements SynchronizationService {
+    private static final int MAX_DEMAND_PERMITS = 1 << 24;
+
+    private final int CHUNK_SIZE;
+    private final int FETCH_CONCURRENCY;
+    private final int DIFF_CONCURRENCY;
+    private final int WRITE_CONCURRENCY;
+
+    private final ClientService clientService;
+    private final PatientService patientService;
+    private final NoteService noteService;
+    private final UserService userService;
+    private final Statistics statistics;
+    private final ConnectionPoolStatistics connectionPoolStatistics;
+
+    public ReactiveSynchronizationServiceImpl(ClientService clientService,
+                                              PatientService patientService,
+                                              NoteService noteService,
+                                              UserService userService,
+                                              Statistics statistics,
+                                              ConnectionPoolStatistics connectionPoolStatistics,
+                                              @Value("${COMMENT_BATCH_SIZE:200}") int chunkSize,
+                                              @Value("${REACTIVE_FETCH_CONCURRENCY:16}") int fetchConcurrency,
+                                              @Value("${REACTIVE_DIFF_CONCURRENCY:${THREAD_COUNT:4}}") int diffConcurrency,
+                                              @Value("${REACTIVE_WRITE_CONCURRENCY:${THREAD_COUNT:4}}") int writeConcurrency) {
+        this.clientService = clientService;
+        this.patientService = patientService;
+        this.noteService = noteService;
+        this.userService = userService;
+        this.statistics = statistics;
+        this.connectionPoolStatistics = connectionPoolStatistics;
+        CHUNK_SIZE = chunkSize;
+        FETCH_CONCURRENCY = fetchConcurrency;
+        DIFF_CONCURRENCY = diffConcurrency;
+        WRITE_CONCURRENCY = writeConcurrency;
+    }
+
+    @Override
+    public void synchronize() {
+        log.info("Starting reactive synchronization");
+        try {
+            statistics.startPhase(Phase.USERS);
+            userService.preloadUsers();
+            // clients are streamed, so their total is not known in advance
+            statistics.startPhase(Phase.PIPELINE);
+            pipeline().block();
+            statistics.finishPhase();
+            log.info("Synchronization finished");
+        } catch (Exception e) {
+            log.info("Synchronization failed");
+            log.error(e.getMessage(), e);
+            statistics.recordRunFailure(e);
+        } finally {
+            log.info(statistics.generateStatisticsMessage());
+            log.info(connectionPoolStatistics.generateStatisticsMessage());
+        }
+    }
+
+    Mono<Void> pipeline() {
+        // comments are fetched without holding a thread, the watermark moves only after every note is written
+        return blocking(() -> noteService.startCommentSync(true))
+                .flatMap(commentSync -> pipeline(commentSync)
+                        .then(Mono.<Void>fromRunnable(commentSync::complete).subscribeOn(Schedulers.boundedElastic())));
+    }
+
+    private Mono<Void> pipeline(CommentSync commentSync) {
+        // name index is loaded once per run instead of once per chunk, chunks add their new patients to it
+        return blocking(() -> new HashMap<>(patientService.findPatientIdsByFullName()))
+                .flatMapMany(patientIdsByFullName -> streamValidClients()
+                        .distinct(ClientDto::guid)
+                        .buffer(CHUNK_SIZE)
+                        // patients created for one chunk may be reused by the next one, so chunks go one by one
+                        .concatMap(clients -> blocking(() -> synchronizePatients(clients, patientIdsByFullName)), 1))
+                .filter(chunk -> !chunk.clients().isEmpty())
+                .flatMap(chunk -> Mono.fromFuture(() -> commentSync.fetch(chunk.clients()))
+                                .map(comments -> new FetchedComments(comments, chunk.patientStatuses())),
+                        FETCH_CONCURRENCY)
+                .flatMap(fetched -> blocking(() -> noteService.findNewAndUpdatedNotes(fetched.comments(),
+                        fetched.patientStatuses())), DIFF_CONCURRENCY)
+                .filter(notes -> !notes.isEmpty())
+                .flatMap(notes -> blocking(() -> {
+                    noteService.saveNotes(notes);
+                    return notes.size();
+                }), WRITE_CONCURRENCY)
+                .then();
+    }
+
+    // parser thread waits for demand of the next stages, so clients are read only as fast as they are processed
+    private Flux<ClientDto> streamValidClients() {
+        return Flux.<ClientDto>create(sink -> {
+            Semaphore demand = new Semaphore(0);
+            AtomicBoolean unbounded = new AtomicBoolean();
+            AtomicBoolean cancelled = new AtomicBoolean();
+
+            sink.onRequest(requested -> {
+                if (requested == Long.MAX_VALUE) {
+                    unbounded.set(true);
+                }
+                demand.release((int) Math.min(requested, MAX_DEMAND_PERMITS));
+            });
+            sink.onCancel(() -> {
+                cancelled.set(true);
+                demand.release(MAX_DEMAND_PERMITS);
+            });
+
+            try {
+                clientService.fetchValidClientData(client -> {
+                    if (!unbounded.get()) {
+                        demand.acquireUninterruptibly();
+                    }
+                    if (cancelled.get()) {
+                        throw new CancellationException("Client stream is cancelled");
+                    }
+                    sink.next(client);
+                });
+                sink.complete();
+            } catch (Exception e) {
+                sink.error(e);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ClientChunk synchronizePatients(List<ClientDto> clients, Map<FullNameDto, Long> patientIdsByFullName) {
+        patientService.synchronizePatients(clients, patientIdsByFullName);
+
+        Map<UUID, PatientStatusDto> patientStatuses = patientService.findPatientStatusesByClientGuids(clients.stream()
+                .map(ClientDto::guid)
+                .toList());
+
+        // comments of inactive patients are not requested
+        List<ClientDto> activeClients = clients.stream()
+                .filter(client -> {
+                    PatientStatusDto patient = patientStatuses.get(client.guid());
+                    return patient != null && patient.status().equals(Status.ACTIVE);
+                })
+                .toList();
+        statistics.addSkippedCommentFetches(clients.size() - activeClients.size());
+
+        return new ClientChunk(activeClients, patientStatuses);
+    }
+
+    // jdbc and jpa calls are moved off the threads delivering http responses
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private record ClientChunk(List<ClientDto> clients, Map<UUID, PatientStatusDto> patientStatuses) {
+    }
+
+    private record FetchedComments(Map<UUID, List<CommentResponseDto>> comments,
+                                   Map<UUID, PatientStatusDto> patientStatuses) {
+    }
+}
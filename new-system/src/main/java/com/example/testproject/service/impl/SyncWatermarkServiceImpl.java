@@ -0,0 +1,58 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.entity.SyncWatermark;
+import com.example.testproject.repository.SyncWatermarkJdbcRepository;
+import com.example.testproject.repository.SyncWatermarkRepository;
+import com.example.testproject.service.SyncWatermarkService;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+public class SyncWatermarkServiceImpl implements SyncWatermarkService {
+    private final SyncWatermarkRepository syncWatermarkRepository;
+    private final SyncWatermarkJdbcRepository syncWatermarkJdbcRepository;
+
+    public SyncWatermarkServiceImpl(SyncWatermarkRepository syncWatermarkRepository,
+                                    SyncWatermarkJdbcRepository syncWatermarkJdbcRepository) {
+        this.syncWatermarkRepository = syncWatermarkRepository;
+        this.syncWatermarkJdbcRepository = syncWatermarkJdbcRepository;
+    }
+
+    @Override
+    public Optional<LocalDateTime> findWatermark(String name) {
+        return syncWatermarkRepository.findById(name)
+                .map(SyncWatermark::getWatermark);
+    }
+
+    @Override
+    public void saveWatermark(String name, LocalDateTime watermark) {
+        // watermark never moves backwards
+        Optional<LocalDateTime> current = findWatermark(name);
+        if (current.isPresent() && !watermark.isAfter(current.get())) {
+            return;
+        }
+        syncWatermarkRepository.save(new SyncWatermark(name, watermark, LocalDateTime.now()));
+    }
+
+    @Override
+    public Set<UUID> findSyncedClients(String name) {
+        return syncWatermarkJdbcRepository.findClientIds(name);
+    }
+
+    // only the difference is written, in steady state it is a few clients per run
+    @Override
+    public void saveSyncedClients(String name, Set<UUID> previousClients, Set<UUID> syncedClients) {
+        Set<UUID> removedClients = new HashSet<>(previousClients);
+        removedClients.removeAll(syncedClients);
+        Set<UUID> addedClients = new HashSet<>(syncedClients);
+        addedClients.removeAll(previousClients);
+
+        syncWatermarkJdbcRepository.deleteClientIds(name, removedClients);
+        syncWatermarkJdbcRepository.insertClientIds(name, addedClients);
+    }
+}
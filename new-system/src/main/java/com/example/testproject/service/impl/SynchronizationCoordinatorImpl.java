@@ -0,0 +1,88 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.service.SynchronizationCoordinator;
+import com.example.testproject.service.SynchronizationRun;
+import com.example.testproject.service.SynchronizationService;
+import com.example.testproject.statistics.Statistics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+// scheduler and force endpoint share one run at a time, so runs never double the load on old system,
+// never race on inserts and every run has its own statistics
+@Slf4j
+@Service
+public class SynchronizationCoordinatorImpl implements SynchronizationCoordinator {
+    private final int KEPT_RUNS;
+
+    private final SynchronizationService synchronizationService;
+    private final Statistics statistics;
+    private final TaskExecutor syncRunExecutor;
+
+    // run which is requested but not started yet, every next trigger joins it
+    private SynchronizationRun queuedRun;
+
+    // insertion order, the oldest run is dropped first
+    private final Map<UUID, SynchronizationRun> recentRuns = new LinkedHashMap<>();
+
+    public SynchronizationCoordinatorImpl(SynchronizationService synchronizationService,
+                                          Statistics statistics,
+                                          @Qualifier("syncRunExecutor") TaskExecutor syncRunExecutor,
+                                          @Value("${KEPT_SYNC_RUNS:20}") int keptRuns) {
+        this.synchronizationService = synchronizationService;
+        this.statistics = statistics;
+        this.syncRunExecutor = syncRunExecutor;
+        KEPT_RUNS = keptRuns;
+    }
+
+    @Override
+    public synchronized SynchronizationRun requestSynchronization() {
+        if (queuedRun != null) {
+            log.info("Synchronization {} is already queued, joining it", queuedRun.getId());
+            return queuedRun;
+        }
+
+        SynchronizationRun run = new SynchronizationRun(UUID.randomUUID());
+        queuedRun = run;
+        recentRuns.put(run.getId(), run);
+        if (recentRuns.size() > KEPT_RUNS) {
+            recentRuns.remove(recentRuns.keySet().iterator().next());
+        }
+        // single run executor starts queued run only after the active one is finished
+        syncRunExecutor.execute(() -> execute(run));
+        return run;
+    }
+
+    @Override
+    public synchronized Optional<SynchronizationRun> findRun(UUID runId) {
+        return Optional.ofNullable(recentRuns.get(runId));
+    }
+
+    private void execute(SynchronizationRun run) {
+        synchronized (this) {
+            queuedRun = null;
+        }
+
+        // run is finished whatever is thrown, otherwise its waiters and every later run behind it hang
+        Throwable failure = null;
+        try {
+            run.start(statistics.startRun(run.getId()));
+            log.info("Synchronization {} started", run.getId());
+            synchronizationService.synchronize();
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            run.finish(failure);
+        }
+    }
+}
@@ -1,49 +1,155 @@
 package com.example.testproject.service.impl;
 
 import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
+import com.example.testproject.exception.ConnectionException;
 import com.example.testproject.service.ClientService;
+import com.example.testproject.service.CommentSync;
 import com.example.testproject.service.NoteService;
 import com.example.testproject.service.PatientService;
 import com.example.testproject.service.SynchronizationService;
+import com.example.testproject.service.UserService;
+import com.example.testproject.statistics.ConnectionPoolStatistics;
 import com.example.testproject.statistics.Statistics;
+import com.example.testproject.statistics.Statistics.Phase;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "SYNC_ENGINE", havingValue = "blocking", matchIfMissing = true)
 public class SynchronizationServiceImpl implements SynchronizationService {
+    private final boolean PIPELINED_PHASES;
+    private final int PATIENT_PARTITIONS;
+    private final int CHUNK_SIZE;
+
     private final ClientService clientService;
     private final PatientService patientService;
     private final NoteService noteService;
+    private final UserService userService;
     private final Statistics statistics;
+    private final ConnectionPoolStatistics connectionPoolStatistics;
+    private final AsyncTaskExecutor patientSyncExecutor;
+    private final AsyncTaskExecutor noteSyncExecutor;
 
     public SynchronizationServiceImpl(ClientService clientService,
                                       PatientService patientService,
                                       NoteService noteService,
-                                      Statistics statistics) {
+                                      UserService userService,
+                                      Statistics statistics,
+                                      ConnectionPoolStatistics connectionPoolStatistics,
+                                      @Qualifier("patientSyncExecutor") AsyncTaskExecutor patientSyncExecutor,
+                                      @Qualifier("noteSyncExecutor") AsyncTaskExecutor noteSyncExecutor,
+                                      @Value("${PIPELINED_PHASES:false}") boolean pipelinedPhases,
+                                      @Value("${PATIENT_PARTITIONS:4}") int patientPartitions,
+                                      @Value("${COMMENT_BATCH_SIZE:200}") int chunkSize) {
         this.clientService = clientService;
         this.patientService = patientService;
         this.noteService = noteService;
+        this.userService = userService;
         this.statistics = statistics;
+        this.connectionPoolStatistics = connectionPoolStatistics;
+        this.patientSyncExecutor = patientSyncExecutor;
+        this.noteSyncExecutor = noteSyncExecutor;
+        PIPELINED_PHASES = pipelinedPhases;
+        PATIENT_PARTITIONS = patientPartitions;
+        CHUNK_SIZE = chunkSize;
     }
 
     @Override
     public void synchronize() {
-        statistics.reset();
         log.info("Starting synchronization");
         try {
+            statistics.startPhase(Phase.CLIENTS);
             List<ClientDto> clients = clientService.fetchClientData();
             clientService.filterInvalidClientData(clients);
-            patientService.synchronizePatients(clients);
-            noteService.synchronizeNotesConcurrently(clients);
+            statistics.setTotalClients(clients.size());
+            if (PIPELINED_PHASES) {
+                statistics.startPhase(Phase.PIPELINE);
+                synchronizePipelined(clients);
+            } else {
+                statistics.startPhase(Phase.PATIENTS);
+                patientService.synchronizePatients(clients);
+                statistics.startPhase(Phase.USERS);
+                userService.preloadUsers();
+                statistics.startPhase(Phase.NOTES);
+                noteService.synchronizeNotesConcurrently(clients);
+            }
+            statistics.finishPhase();
             log.info("Synchronization finished");
         } catch (Exception e) {
             log.info("Synchronization failed");
             log.error(e.getMessage(), e);
+            statistics.recordRunFailure(e);
         } finally {
             log.info(statistics.generateStatisticsMessage());
+            log.info(connectionPoolStatistics.generateStatisticsMessage());
+        }
+    }
+
+    // patients are resolved in parallel partitions by full name, so one person is never created twice,
+    // notes of every resolved chunk are synchronized while next chunks of patients are still processed
+    private void synchronizePipelined(List<ClientDto> clients)
+            throws ExecutionException, InterruptedException, ConnectionException {
+        userService.preloadUsers();
+        CommentSync commentSync = noteService.startCommentSync(false);
+        Map<FullNameDto, Long> patientIdsByFullName = new ConcurrentHashMap<>(patientService.findPatientIdsByFullName());
+
+        Map<UUID, ClientDto> distinctClients = new LinkedHashMap<>();
+        clients.forEach(client -> distinctClients.putIfAbsent(client.guid(), client));
+
+        List<List<ClientDto>> partitions = new ArrayList<>(PATIENT_PARTITIONS);
+        for (int i = 0; i < PATIENT_PARTITIONS; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        distinctClients.values().forEach(client -> partitions.get(Math.floorMod(
+                new FullNameDto(client.firstName(), client.lastName()).hashCode(), PATIENT_PARTITIONS)).add(client));
+
+        Queue<Future<?>> noteSyncs = new ConcurrentLinkedQueue<>();
+        List<Future<?>> patientSyncs = new ArrayList<>(PATIENT_PARTITIONS);
+        partitions.forEach(partition -> patientSyncs.add(patientSyncExecutor.submit(() -> {
+            for (int from = 0; from < partition.size(); from += CHUNK_SIZE) {
+                List<ClientDto> chunk = partition.subList(from, Math.min(from + CHUNK_SIZE, partition.size()));
+
+                patientService.synchronizePatients(chunk, patientIdsByFullName);
+                Map<UUID, PatientStatusDto> patientStatuses = patientService.findPatientStatusesByClientGuids(
+                        chunk.stream().map(ClientDto::guid).toList());
+
+                noteSyncs.add(noteSyncExecutor.submit(() -> noteService.synchronizeNotes(chunk, patientStatuses,
+                        commentSync)));
+            }
+        })));
+
+        // every patient task is awaited first, no note task is added after that
+        ExecutionException failure = null;
+        for (Future<?> patientSync : patientSyncs) {
+            try {
+                patientSync.get();
+            } catch (ExecutionException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        for (Future<?> noteSync : noteSyncs) {
+            try {
+                noteSync.get();
+            } catch (ExecutionException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
+        commentSync.complete();
     }
 }
@@ -1,29 +1,93 @@
 package com.example.testproject.service.impl;
 
 import com.example.testproject.entity.User;
+import com.example.testproject.repository.UserJdbcRepository;
 import com.example.testproject.repository.UserRepository;
 import com.example.testproject.service.UserService;
 import com.example.testproject.statistics.Statistics;
 import org.springframework.stereotype.Service;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 public class UserServiceImpl implements UserService {
+    // there are only a few users, all of them are kept in memory
+    private final Map<String, User> usersByLogin = new ConcurrentHashMap<>();
+    // unknown logins are inserted by one thread at a time, others find them in cache afterwards
+    private final Object userCreationLock = new Object();
+
     private final UserRepository userRepository;
+    private final UserJdbcRepository userJdbcRepository;
 
     private final Statistics statistics;
 
     public UserServiceImpl(UserRepository userRepository,
+                           UserJdbcRepository userJdbcRepository,
                            Statistics statistics) {
         this.userRepository = userRepository;
+        this.userJdbcRepository = userJdbcRepository;
         this.statistics = statistics;
     }
 
+    @Override
+    public void preloadUsers() {
+        usersByLogin.clear();
+        userRepository.findAll().forEach(user -> usersByLogin.put(user.getLogin(), user));
+    }
+
     @Override
     public User createUserIfNotExists(String login) {
-        int result = userRepository.createByLoginIfNotExists(login);
-        if(result != 0) {
-            statistics.addNewUsers(1);
+        return createUsersIfNotExist(List.of(login)).get(login);
+    }
+
+    @Override
+    public Map<String, User> createUsersIfNotExist(Collection<String> logins) {
+        Map<String, User> users = new HashMap<>();
+        Set<String> unknownLogins = new HashSet<>();
+
+        logins.forEach(login -> {
+            User user = usersByLogin.get(login);
+            if (user == null) {
+                unknownLogins.add(login);
+            } else {
+                users.put(login, user);
+            }
+        });
+
+        if (unknownLogins.isEmpty()) {
+            return users;
+        }
+
+        synchronized (userCreationLock) {
+            // created by the previous lock holder
+            unknownLogins.removeIf(login -> {
+                User user = usersByLogin.get(login);
+                if (user != null) {
+                    users.put(login, user);
+                }
+                return user != null;
+            });
+            if (unknownLogins.isEmpty()) {
+                return users;
+            }
+
+            List<User> createdUsers = userJdbcRepository.createUsersIfNotExist(unknownLogins);
+            statistics.addNewUsers(createdUsers.size());
+            createdUsers.forEach(user -> unknownLogins.remove(user.getLogin()));
+
+            // the rest was created concurrently by another process after the cache was checked
+            List<User> resolvedUsers = new ArrayList<>(createdUsers);
+            if (!unknownLogins.isEmpty()) {
+                resolvedUsers.addAll(userRepository.findByLoginIn(unknownLogins));
+            }
+
+            resolvedUsers.forEach(user -> {
+                usersByLogin.putIfAbsent(user.getLogin(), user);
+                users.put(user.getLogin(), user);
+            });
         }
-        return userRepository.findByLogin(login);
+
+        return users;
     }
 }
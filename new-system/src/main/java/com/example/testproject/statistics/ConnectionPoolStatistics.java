@@ -0,0 +1,43 @@
+package com.example.testproject.statistics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToIntFunction;
+
+// pool state is read on every scrape, nothing is recorded by the sync workers themselves
+@Component
+public class ConnectionPoolStatistics {
+    private final PoolingHttpClientConnectionManager oldSystemConnectionManager;
+
+    private final String MESSAGE_TEMPLATE = """
+            Old system connection pool. Leased: %d, pending: %d, available: %d, max: %d""";
+
+    public ConnectionPoolStatistics(PoolingHttpClientConnectionManager oldSystemConnectionManager,
+                                    MeterRegistry meterRegistry) {
+        this.oldSystemConnectionManager = oldSystemConnectionManager;
+        registerGauge(meterRegistry, "leased", PoolStats::getLeased);
+        registerGauge(meterRegistry, "pending", PoolStats::getPending);
+        registerGauge(meterRegistry, "available", PoolStats::getAvailable);
+        registerGauge(meterRegistry, "max", PoolStats::getMax);
+    }
+
+    public PoolStats getPoolStats() {
+        return oldSystemConnectionManager.getTotalStats();
+    }
+
+    public String generateStatisticsMessage() {
+        PoolStats stats = getPoolStats();
+        return MESSAGE_TEMPLATE.formatted(stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+    }
+
+    private void registerGauge(MeterRegistry meterRegistry, String state, ToIntFunction<PoolStats> value) {
+        Gauge.builder("sync.http.pool.connections", this, statistics -> value.applyAsInt(statistics.getPoolStats()))
+                .tag("pool", "old-system")
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+}
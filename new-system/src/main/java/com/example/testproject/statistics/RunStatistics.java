@@ -0,0 +1,111 @@
+package com.example.testproject.statistics;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+// counters of one synchronization run, kept as they are after the run is finished
+@Getter
+public class RunStatistics {
+    private final UUID runId;
+    private final Instant startedAt = Instant.now();
+
+    // progress of the run, read by status requests while workers keep adding to it
+    private volatile Statistics.Phase currentPhase;
+    private volatile long phaseStartNanos;
+    private volatile long totalClients;
+    private volatile Throwable failure;
+    private final LongAdder processedClients = new LongAdder();
+    private final LongAdder fetchedComments = new LongAdder();
+
+    private final LongAdder newPatients = new LongAdder();
+    private final LongAdder newClients = new LongAdder();
+    private final LongAdder invalidClientData = new LongAdder();
+    private final LongAdder newUsers = new LongAdder();
+    private final LongAdder invalidComments = new LongAdder();
+    private final LongAdder failedCommentFetches = new LongAdder();
+    private final LongAdder skippedCommentFetches = new LongAdder();
+    private final LongAdder newNotes = new LongAdder();
+    private final LongAdder updatedNotes = new LongAdder();
+    private final LongAdder writtenNotes = new LongAdder();
+    private final LongAdder noteWriteNanos = new LongAdder();
+
+    private final String MESSAGE_TEMPLATE = """
+
+            ---------------- STATISTICS ----------------
+            Run: %s
+            New patients: %d
+            New clients: %d
+            Invalid clients: %d
+            New users: %d
+            Invalid comments: %d
+            Failed comment fetches: %d
+            Skipped comment fetches: %d
+            New notes: %d
+            Updated notes: %d
+            Written notes per second: %d
+            ---------------------------------------------
+            """;
+
+    public RunStatistics(UUID runId) {
+        this.runId = runId;
+    }
+
+    void startPhase(Statistics.Phase phase, long startNanos) {
+        currentPhase = phase;
+        phaseStartNanos = startNanos;
+    }
+
+    void finishPhase() {
+        currentPhase = null;
+    }
+
+    void setTotalClients(long totalClients) {
+        this.totalClients = totalClients;
+    }
+
+    void fail(Throwable failure) {
+        this.failure = failure;
+    }
+
+    public long getCommentsPerSecond() {
+        long elapsedMillis = Duration.between(startedAt, Instant.now()).toMillis();
+        return elapsedMillis == 0 ? 0 : fetchedComments.sum() * 1000 / elapsedMillis;
+    }
+
+    // clients are processed only by note phases, so the pace of the current phase predicts the rest
+    public Duration estimateRemainingTime() {
+        long processed = processedClients.sum();
+        long remaining = totalClients - processed;
+        if (processed == 0 || remaining <= 0) {
+            return remaining <= 0 && totalClients > 0 ? Duration.ZERO : null;
+        }
+        long phaseNanos = System.nanoTime() - phaseStartNanos;
+        return Duration.ofNanos(phaseNanos / processed * remaining);
+    }
+
+    // write time is summed over all writing threads, so the rate is per writing thread
+    public long getWrittenNotesPerSecond() {
+        long writeNanos = noteWriteNanos.sum();
+        return writeNanos == 0 ? 0 : writtenNotes.sum() * 1_000_000_000L / writeNanos;
+    }
+
+    public String generateStatisticsMessage() {
+        return MESSAGE_TEMPLATE.formatted(
+                runId,
+                newPatients.sum(),
+                newClients.sum(),
+                invalidClientData.sum(),
+                newUsers.sum(),
+                invalidComments.sum(),
+                failedCommentFetches.sum(),
+                skippedCommentFetches.sum(),
+                newNotes.sum(),
+                updatedNotes.sum(),
+                getWrittenNotesPerSecond()
+        );
+    }
+}
@@ -1,83 +1,252 @@
 package com.example.testproject.statistics;
 
-import lombok.Getter;
-import lombok.NoArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-@Getter
-@NoArgsConstructor
+// counters of the current run are kept apart for every run, meters are cumulative and scraped by prometheus.
+// both are striped adders or pre-registered meters, so recording neither allocates nor contends between workers
 @Component
 public class Statistics {
-    private final AtomicInteger newPatients = new AtomicInteger(0);
-    private final AtomicInteger newClients = new AtomicInteger(0);
-    private final AtomicInteger invalidClientData = new AtomicInteger(0);
-    private final AtomicInteger newUsers = new AtomicInteger(0);
-    private final AtomicInteger invalidComments = new AtomicInteger(0);
-    private final AtomicInteger newNotes = new AtomicInteger(0);
-    private final AtomicInteger updatedNotes = new AtomicInteger(0);
-
-    private final String MESSAGE_TEMPLATE = """
-
-            ---------------- STATISTICS ----------------
-            New patients: %d
-            New clients: %d
-            Invalid clients: %d
-            New users: %d
-            Invalid comments: %d
-            New notes: %d
-            Updated notes: %d
-            ---------------------------------------------
-            """;
+    public enum Phase { CLIENTS, PATIENTS, USERS, NOTES, PIPELINE }
+
+    private final Meters meters;
+
+    // runs never overlap, counters recorded outside of a run are kept by an anonymous one
+    private volatile RunStatistics currentRun = new RunStatistics(null);
+
+    public Statistics(MeterRegistry meterRegistry) {
+        meters = new Meters(meterRegistry);
+    }
+
+    public RunStatistics startRun(UUID runId) {
+        RunStatistics run = new RunStatistics(runId);
+        currentRun = run;
+        return run;
+    }
+
+    public RunStatistics getCurrentRun() {
+        return currentRun;
+    }
+
+    public LongAdder getFailedCommentFetches() {
+        return currentRun.getFailedCommentFetches();
+    }
 
     public void addNewPatients(int newPatients) {
-        this.newPatients.getAndAdd(newPatients);
+        currentRun.getNewPatients().add(newPatients);
+        meters.newPatients.increment(newPatients);
     }
 
     public void addNewClients(int newClients) {
-        this.newClients.getAndAdd(newClients);
+        currentRun.getNewClients().add(newClients);
+        meters.newClients.increment(newClients);
     }
 
     public void addInvalidClientData(int invalidClientData) {
-        this.invalidClientData.getAndAdd(invalidClientData);
+        currentRun.getInvalidClientData().add(invalidClientData);
+        meters.invalidClientData.increment(invalidClientData);
     }
 
     public void addNewUsers(int newUsers) {
-        this.newUsers.getAndAdd(newUsers);
+        currentRun.getNewUsers().add(newUsers);
+        meters.newUsers.increment(newUsers);
     }
 
     public void addInvalidComments(int invalidComments) {
-        this.invalidComments.getAndAdd(invalidComments);
+        currentRun.getInvalidComments().add(invalidComments);
+        meters.invalidComments.increment(invalidComments);
+    }
+
+    public void addFailedCommentFetches(int failedCommentFetches) {
+        currentRun.getFailedCommentFetches().add(failedCommentFetches);
+        meters.failedCommentFetches.increment(failedCommentFetches);
+    }
+
+    public void addSkippedCommentFetches(int skippedCommentFetches) {
+        RunStatistics run = currentRun;
+        run.getSkippedCommentFetches().add(skippedCommentFetches);
+        // comments of inactive clients are never fetched, they are processed as well
+        run.getProcessedClients().add(skippedCommentFetches);
+        meters.skippedCommentFetches.increment(skippedCommentFetches);
     }
 
     public void addNewNotes(int newNotes) {
-        this.newNotes.getAndAdd(newNotes);
+        currentRun.getNewNotes().add(newNotes);
+        meters.newNotes.increment(newNotes);
     }
 
     public void addUpdatedNotes(int updatedNotes) {
-        this.updatedNotes.getAndAdd(updatedNotes);
+        currentRun.getUpdatedNotes().add(updatedNotes);
+        meters.updatedNotes.increment(updatedNotes);
+    }
+
+    public void addNoteWrite(int writtenNotes, long writeNanos) {
+        RunStatistics run = currentRun;
+        run.getWrittenNotes().add(writtenNotes);
+        run.getNoteWriteNanos().add(writeNanos);
+        meters.writtenNotes.increment(writtenNotes);
+        meters.noteBatchSize.record(writtenNotes);
+        meters.noteBatchDuration.record(writeNanos, TimeUnit.NANOSECONDS);
     }
 
-    public void reset() {
-        newPatients.set(0);
-        newClients.set(0);
-        invalidClientData.set(0);
-        newUsers.set(0);
-        invalidComments.set(0);
-        newNotes.set(0);
-        updatedNotes.set(0);
+    // previous phase of the run is finished by the next one
+    public void startPhase(Phase phase) {
+        long now = System.nanoTime();
+        RunStatistics run = currentRun;
+        recordPhase(run, now);
+        run.startPhase(phase, now);
+    }
+
+    public void finishPhase() {
+        RunStatistics run = currentRun;
+        recordPhase(run, System.nanoTime());
+        run.finishPhase();
+    }
+
+    private void recordPhase(RunStatistics run, long phaseEnd) {
+        Phase phase = run.getCurrentPhase();
+        if (phase != null) {
+            meters.phases.get(phase).record(phaseEnd - run.getPhaseStartNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void setTotalClients(int totalClients) {
+        currentRun.setTotalClients(totalClients);
+    }
+
+    public void addProcessedClients(int processedClients) {
+        currentRun.getProcessedClients().add(processedClients);
+    }
+
+    public void addFetchedComments(int fetchedComments) {
+        currentRun.getFetchedComments().add(fetchedComments);
+        meters.fetchedComments.increment(fetchedComments);
+    }
+
+    // run is finished anyway, failure is kept to be reported with its statistics
+    public void recordRunFailure(Throwable failure) {
+        currentRun.fail(failure);
+    }
+
+    public void recordClientFetch(long nanos) {
+        meters.clientFetches.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCommentFetch(long nanos) {
+        meters.commentFetches.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // count of the timer is processed chunks, its total is busy time of the worker
+    public void recordWorkerChunk(String worker, long busyNanos) {
+        meters.workerBusy(worker).record(busyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // share of the last run the worker spent on chunks, from 0 to 1
+    public void recordWorkerUtilization(String worker, double utilization) {
+        meters.workerUtilization(worker).set(Double.doubleToLongBits(utilization));
     }
 
     public String generateStatisticsMessage() {
-        return MESSAGE_TEMPLATE.formatted(
-                newPatients.get(),
-                newClients.get(),
-                invalidClientData.get(),
-                newUsers.get(),
-                invalidComments.get(),
-                newNotes.get(),
-                updatedNotes.get()
-        );
+        return currentRun.generateStatisticsMessage();
+    }
+
+    // every meter is registered once, tags are never resolved on the hot path
+    private static final class Meters {
+        private final Counter newPatients;
+        private final Counter newClients;
+        private final Counter invalidClientData;
+        private final Counter newUsers;
+        private final Counter invalidComments;
+        private final Counter failedCommentFetches;
+        private final Counter skippedCommentFetches;
+        private final Counter newNotes;
+        private final Counter updatedNotes;
+        private final Counter writtenNotes;
+        private final Counter fetchedComments;
+        private final DistributionSummary noteBatchSize;
+        private final Timer noteBatchDuration;
+        private final Timer clientFetches;
+        private final Timer commentFetches;
+        private final Map<Phase, Timer> phases = new EnumMap<>(Phase.class);
+        // workers are threads of a fixed pool, so their names are a small closed set of tags
+        private final Map<String, Timer> workerBusy = new ConcurrentHashMap<>();
+        private final Map<String, AtomicLong> workerUtilization = new ConcurrentHashMap<>();
+        private final MeterRegistry registry;
+
+        private Meters(MeterRegistry registry) {
+            this.registry = registry;
+            newPatients = registry.counter("sync.patients.created");
+            newClients = registry.counter("sync.clients.created");
+            invalidClientData = registry.counter("sync.clients.invalid");
+            newUsers = registry.counter("sync.users.created");
+            invalidComments = registry.counter("sync.comments.invalid");
+            failedCommentFetches = registry.counter("sync.comment.fetches", "result", "failed");
+            skippedCommentFetches = registry.counter("sync.comment.fetches", "result", "skipped");
+            newNotes = registry.counter("sync.notes", "change", "created");
+            updatedNotes = registry.counter("sync.notes", "change", "updated");
+            writtenNotes = registry.counter("sync.notes.written");
+            fetchedComments = registry.counter("sync.comments.fetched");
+            noteBatchSize = DistributionSummary.builder("sync.db.batch.size")
+                    .tag("table", "patient_note")
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(1.0)
+                    .maximumExpectedValue(100_000.0)
+                    .register(registry);
+            noteBatchDuration = Timer.builder("sync.db.batch.duration")
+                    .tag("table", "patient_note")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            clientFetches = Timer.builder("sync.old.system.requests")
+                    .tag("endpoint", "clients")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            commentFetches = Timer.builder("sync.old.system.requests")
+                    .tag("endpoint", "comments")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            for (Phase phase : Phase.values()) {
+                phases.put(phase, Timer.builder("sync.phase")
+                        .tag("phase", phase.name().toLowerCase())
+                        .register(registry));
+            }
+        }
+
+        // plain get on the hot path, the registering lambda is only allocated for a new worker
+        private Timer workerBusy(String worker) {
+            Timer timer = workerBusy.get(worker);
+            if (timer != null) {
+                return timer;
+            }
+            return workerBusy.computeIfAbsent(worker, name -> Timer.builder("sync.worker.busy")
+                    .tag("worker", name)
+                    .register(registry));
+        }
+
+        // double bits, so the gauge reads the last value without locking
+        private AtomicLong workerUtilization(String worker) {
+            AtomicLong utilization = workerUtilization.get(worker);
+            if (utilization != null) {
+                return utilization;
+            }
+            return workerUtilization.computeIfAbsent(worker, name -> {
+                AtomicLong value = new AtomicLong();
+                Gauge.builder("sync.worker.utilization", value, bits -> Double.longBitsToDouble(bits.get()))
+                        .tag("worker", name)
+                        .register(registry);
+                return value;
+            });
+        }
     }
 }
@@ -0,0 +1,161 @@
+package com.example.testproject.repository;
+
+import com.example.testproject.entity.Note;
+import com.example.testproject.entity.Patient;
+import com.example.testproject.entity.Status;
+import com.example.testproject.entity.User;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.hibernate.SessionEventListener;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+// schema is the one old system creates for both systems
+@SpringBootTest
+public class NoteWriteBatchingTest {
+    private static final EmbeddedPostgres POSTGRES = startPostgres();
+    private static final LongAdder EXECUTED_BATCHES = new LongAdder();
+    private static final LongAdder EXECUTED_STATEMENTS = new LongAdder();
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private NoteJdbcRepository noteJdbcRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Patient patient;
+    private User user;
+
+    @DynamicPropertySource
+    static void databaseProperties(DynamicPropertyRegistry registry) {
+        registry.add("SPRING_DATASOURCE_URL",
+                () -> POSTGRES.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true");
+        registry.add("SPRING_DATASOURCE_USERNAME", () -> "postgres");
+        registry.add("SPRING_DATASOURCE_PASSWORD", () -> "postgres");
+        registry.add("spring.sql.init.mode", () -> "always");
+        registry.add("spring.sql.init.schema-locations", () -> "file:../old-system/src/main/resources/db_init/schema.sql");
+        registry.add("spring.jpa.properties.hibernate.session.events.auto", JdbcCountingListener.class::getName);
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE patient_note, patient_profile, company_user CASCADE");
+        patient = patientRepository.save(Patient.builder().firstName("first").lastName("last").status(Status.ACTIVE).build());
+        user = new User();
+        user.setLogin("login");
+        user = userRepository.save(user);
+    }
+
+    @Test
+    @DisplayName("Saving new notes through repository. Inserts are sent in jdbc batches of configured size")
+    public void testSaveNotesWithRepositoryInBatches() {
+        List<Note> notes = buildNotes(500);
+
+        EXECUTED_BATCHES.reset();
+        EXECUTED_STATEMENTS.reset();
+        transactionTemplate.executeWithoutResult(status -> noteRepository.saveAll(notes));
+
+        // 'hibernate.jdbc.batch_size' is 50, one pooled sequence call covers 50 ids
+        Assertions.assertEquals(10, EXECUTED_BATCHES.sum());
+        Assertions.assertEquals(10, EXECUTED_STATEMENTS.sum());
+        Assertions.assertEquals(500, countNotes());
+    }
+
+    @Test
+    @DisplayName("Writing notes by jdbc. New notes take one id each, updates take none, ids never collide with hibernate ones")
+    public void testUpsertNotesSpendsOneIdPerNewNote() {
+        List<Note> notes = buildNotes(120);
+
+        long sequenceBefore = lastSequenceValue();
+        noteJdbcRepository.upsertNotes(notes);
+        long sequenceAfterInsert = lastSequenceValue();
+
+        notes.forEach(note -> note.setFingerprint("changed"));
+        noteJdbcRepository.upsertNotes(notes);
+        long sequenceAfterUpdate = lastSequenceValue();
+
+        // remaining ids of the last block are taken first, then three blocks at most
+        Assertions.assertTrue(sequenceAfterInsert - sequenceBefore <= 3 * SequenceIdAllocator.BLOCK_SIZE);
+        Assertions.assertEquals(sequenceAfterInsert, sequenceAfterUpdate);
+        Assertions.assertEquals(120, countNotes());
+
+        transactionTemplate.executeWithoutResult(status -> noteRepository.saveAll(buildNotes(60)));
+        noteJdbcRepository.copyNotes(buildNotes(60));
+
+        Set<Long> ids = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM patient_note", Long.class));
+        Assertions.assertEquals(240, ids.size());
+    }
+
+    private List<Note> buildNotes(int count) {
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            notes.add(Note.builder()
+                    .note("note " + i)
+                    .createdAt(LocalDateTime.now())
+                    .createdBy(user)
+                    .commentId(UUID.randomUUID())
+                    .patient(patient)
+                    .fingerprint("fingerprint")
+                    .build());
+        }
+        return notes;
+    }
+
+    private long countNotes() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM patient_note", Long.class);
+    }
+
+    private long lastSequenceValue() {
+        return jdbcTemplate.queryForObject("SELECT last_value FROM patient_note_id_seq", Long.class);
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // created by hibernate for every session, counts what the session sends to the database
+    public static class JdbcCountingListener implements SessionEventListener {
+        @Override
+        public void jdbcExecuteBatchStart() {
+            EXECUTED_BATCHES.increment();
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            EXECUTED_STATEMENTS.increment();
+        }
+    }
+}
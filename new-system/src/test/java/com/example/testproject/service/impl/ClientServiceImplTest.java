@@ -1,26 +1,33 @@
 package com.example.testproject.service.impl;
 
 import com.example.testproject.dto.ClientDto;
-import com.example.testproject.entity.ClientMapping;
-import com.example.testproject.entity.Patient;
+import com.example.testproject.dto.FullNameDto;
 import com.example.testproject.exception.ConnectionException;
 import com.example.testproject.exception.DataFetchException;
-import com.example.testproject.repository.PatientRepository;
+import com.example.testproject.repository.PatientJdbcRepository;
 import com.example.testproject.statistics.Statistics;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -34,11 +41,14 @@ public class ClientServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @Mock
     private Statistics statistics;
 
     @Mock
-    private PatientRepository patientRepository;
+    private PatientJdbcRepository patientJdbcRepository;
 
     @InjectMocks
     private ClientServiceImpl clientService;
@@ -49,7 +59,7 @@ public class ClientServiceImplTest {
         final String innerMessage = "Unreachable";
         Exception exception = new RestClientException(innerMessage);
 
-        when(restTemplate.postForEntity(anyString(), isNull(), eq(ClientDto[].class)))
+        when(restTemplate.execute(anyString(), eq(HttpMethod.POST), any(RequestCallback.class), any(ResponseExtractor.class)))
                 .thenThrow(exception);
 
         ConnectionException receivedException = Assertions.assertThrows(ConnectionException.class, () -> {
@@ -61,11 +71,28 @@ public class ClientServiceImplTest {
 
     @Test
     @DisplayName("Trying to fetch client data with null response body")
-    public void testFetchClientDataWithNullResponseBody() {
-        ResponseEntity<ClientDto[]> response = new ResponseEntity<>(null, HttpStatus.OK);
+    public void testFetchClientDataWithNullResponseBody() throws IOException {
+        respondWith("null");
+
+        Assertions.assertThrows(DataFetchException.class, () -> {
+            clientService.fetchClientData();
+        });
+    }
+
+    @Test
+    @DisplayName("Trying to fetch client data with non array response body")
+    public void testFetchClientDataWithNonArrayResponseBody() throws IOException {
+        respondWith("{\"guid\": \"" + UUID.randomUUID() + "\"}");
 
-        when(restTemplate.postForEntity(anyString(), isNull(), eq(ClientDto[].class)))
-                .thenReturn(response);
+        Assertions.assertThrows(DataFetchException.class, () -> {
+            clientService.fetchClientData();
+        });
+    }
+
+    @Test
+    @DisplayName("Trying to fetch client data with non object element in the middle of array")
+    public void testFetchClientDataWithMalformedElement() throws IOException {
+        respondWith("[{\"guid\": \"" + UUID.randomUUID() + "\"}, null, {\"guid\": \"" + UUID.randomUUID() + "\"}]");
 
         Assertions.assertThrows(DataFetchException.class, () -> {
             clientService.fetchClientData();
@@ -74,19 +101,43 @@ public class ClientServiceImplTest {
 
     @Test
     @DisplayName("Fetching client data successfully")
-    public void testFetchClientDataWithDataListReturn() {
-        ClientDto[] clientData = new ClientDto[]{
+    public void testFetchClientDataWithDataListReturn() throws IOException {
+        List<ClientDto> clientData = List.of(
                 ClientDto.builder().guid(UUID.randomUUID()).build(),
                 ClientDto.builder().guid(UUID.randomUUID()).build()
-        };
-        ResponseEntity<ClientDto[]> response = new ResponseEntity<>(clientData, HttpStatus.OK);
-
-        when(restTemplate.postForEntity(anyString(), isNull(), eq(ClientDto[].class)))
-                .thenReturn(response);
+        );
+        respondWith(objectMapper.writeValueAsString(clientData));
 
         List<ClientDto> result = Assertions.assertDoesNotThrow(() -> clientService.fetchClientData());
-        Assertions.assertEquals(clientData[0].guid(), result.get(0).guid());
-        Assertions.assertEquals(clientData[1].guid(), result.get(1).guid());
+        Assertions.assertEquals(clientData.get(0).guid(), result.get(0).guid());
+        Assertions.assertEquals(clientData.get(1).guid(), result.get(1).guid());
+
+        // result is modifiable, invalid clients are filtered out of it
+        Assertions.assertDoesNotThrow(() -> result.remove(0));
+    }
+
+    @Test
+    @DisplayName("Fetching valid client data. Invalid items are counted and skipped")
+    public void testFetchValidClientDataWithInvalidItem() throws IOException {
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build()
+        );
+        respondWith(objectMapper.writeValueAsString(clientData));
+
+        Set<ConstraintViolation<ClientDto>> violations = new HashSet<>();
+        violations.add(mock(ConstraintViolation.class));
+
+        when(validator.validate(any(ClientDto.class)))
+                .thenReturn(violations)
+                .thenReturn(Set.of());
+
+        List<ClientDto> result = new ArrayList<>();
+        Assertions.assertDoesNotThrow(() -> clientService.fetchValidClientData(result::add));
+
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertEquals(clientData.get(1).guid(), result.get(0).guid());
+        verify(statistics).addInvalidClientData(1);
     }
 
     @Test
@@ -146,30 +197,21 @@ public class ClientServiceImplTest {
                         .build()
         );
 
-        ClientMapping mappingForFirstClient = new ClientMapping();
-        mappingForFirstClient.setId(clientData.get(0).guid());
-
-        Patient firstPatient = Patient.builder()
-                .clientMappings(Set.of(mappingForFirstClient))
-                .build();
-        Patient secondPatient = Patient.builder()
-                .clientMappings(new HashSet<>())
-                .build();
-
-        when(patientRepository.findByFirstNameAndLastName(clientData.get(0).firstName(), clientData.get(0).lastName()))
-                .thenReturn(firstPatient);
+        Map<FullNameDto, Long> patientIdsByFullName = Map.of(
+                new FullNameDto("f1", "l1"), 1L,
+                new FullNameDto("f2", "l2"), 2L
+        );
 
-        when(patientRepository.findByFirstNameAndLastName(clientData.get(1).firstName(), clientData.get(1).lastName()))
-                .thenReturn(secondPatient);
+        when(patientJdbcRepository.findPatientIdsByClientGuids(List.of(clientData.get(0).guid(), clientData.get(1).guid())))
+                .thenReturn(Map.of(clientData.get(0).guid(), 1L));
 
-        int createdCount = clientService.createNewClients(clientData);
+        int createdCount = clientService.createNewClients(clientData, patientIdsByFullName);
 
         Assertions.assertEquals(1, createdCount);
-        verify(patientRepository, times(1))
-                .findByFirstNameAndLastName(clientData.get(0).firstName(), clientData.get(0).lastName());
-        verify(patientRepository, times(1))
-                .findByFirstNameAndLastName(clientData.get(1).firstName(), clientData.get(1).lastName());
-        verify(patientRepository, times(1)).save(any(Patient.class));
+
+        ArgumentCaptor<Map<UUID, Long>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(patientJdbcRepository, times(1)).insertClientMappings(captor.capture());
+        Assertions.assertEquals(Map.of(clientData.get(1).guid(), 2L), captor.getValue());
     }
 
     @Test
@@ -188,33 +230,64 @@ public class ClientServiceImplTest {
                         .build()
         );
 
-        ClientMapping mappingForFirstClient = new ClientMapping();
-        mappingForFirstClient.setId(clientData.get(0).guid());
+        Map<FullNameDto, Long> patientIdsByFullName = Map.of(
+                new FullNameDto("f1", "l1"), 1L,
+                new FullNameDto("f2", "l2"), 2L
+        );
+
+        when(patientJdbcRepository.findPatientIdsByClientGuids(any()))
+                .thenReturn(Map.of(clientData.get(0).guid(), 1L, clientData.get(1).guid(), 2L));
+
+        int createdCount = clientService.createNewClients(clientData, patientIdsByFullName);
+
+        Assertions.assertEquals(0, createdCount);
+
+        verify(patientJdbcRepository, times(1)).findPatientIdsByClientGuids(any());
+        verify(patientJdbcRepository, never()).insertClientMappings(any());
+    }
+
+    @Test
+    @DisplayName("Trying to create new client. Renamed client moves to patient of its new name")
+    public void testCreateNewClientsWithRenamedClient() {
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder()
+                        .guid(UUID.randomUUID())
+                        .firstName("f1")
+                        .lastName("l1")
+                        .build(),
+                ClientDto.builder()
+                        .guid(UUID.randomUUID())
+                        .firstName("f2")
+                        .lastName("l2")
+                        .build()
+        );
 
-        ClientMapping mappingForSecondClient = new ClientMapping();
-        mappingForSecondClient.setId(clientData.get(1).guid());
+        Map<FullNameDto, Long> patientIdsByFullName = Map.of(
+                new FullNameDto("f1", "l1"), 1L,
+                new FullNameDto("f2", "l2"), 2L
+        );
 
-        Patient firstPatient = Patient.builder()
-                .clientMappings(Set.of(mappingForFirstClient))
-                .build();
-        Patient secondPatient = Patient.builder()
-                .clientMappings(Set.of(mappingForSecondClient))
-                .build();
+        // second client was mapped to patient 3 before it got the name of patient 2
+        when(patientJdbcRepository.findPatientIdsByClientGuids(any()))
+                .thenReturn(Map.of(clientData.get(0).guid(), 1L, clientData.get(1).guid(), 3L));
 
-        when(patientRepository.findByFirstNameAndLastName(clientData.get(0).firstName(), clientData.get(0).lastName()))
-                .thenReturn(firstPatient);
+        int createdCount = clientService.createNewClients(clientData, patientIdsByFullName);
 
-        when(patientRepository.findByFirstNameAndLastName(clientData.get(1).firstName(), clientData.get(1).lastName()))
-                .thenReturn(secondPatient);
+        Assertions.assertEquals(1, createdCount);
 
-        int createdCount = clientService.createNewClients(clientData);
+        ArgumentCaptor<Map<UUID, Long>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(patientJdbcRepository, times(1)).insertClientMappings(captor.capture());
+        Assertions.assertEquals(Map.of(clientData.get(1).guid(), 2L), captor.getValue());
+    }
 
-        Assertions.assertEquals(0, createdCount);
+    private void respondWith(String body) throws IOException {
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        when(response.getBody()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
 
-        verify(patientRepository, times(1))
-                .findByFirstNameAndLastName(clientData.get(0).firstName(), clientData.get(0).lastName());
-        verify(patientRepository, times(1))
-                .findByFirstNameAndLastName(clientData.get(1).firstName(), clientData.get(1).lastName());
-        verify(patientRepository, never()).save(any(Patient.class));
+        when(restTemplate.execute(anyString(), eq(HttpMethod.POST), any(RequestCallback.class), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> {
+                    ResponseExtractor<?> extractor = invocation.getArgument(3);
+                    return extractor.extractData(response);
+                });
     }
 }
@@ -1,17 +1,27 @@
 package com.example.testproject.service.impl;
 
+import com.example.testproject.dto.ClientCommentsDto;
 import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentChangesDto;
+import com.example.testproject.dto.CommentChangesRequestDto;
 import com.example.testproject.dto.CommentResponseDto;
+import com.example.testproject.dto.PatientStatusDto;
 import com.example.testproject.entity.Note;
 import com.example.testproject.entity.Patient;
 import com.example.testproject.entity.Status;
 import com.example.testproject.entity.User;
+import com.example.testproject.exception.ConnectionException;
+import com.example.testproject.repository.NoteJdbcRepository;
 import com.example.testproject.repository.NoteRepository;
+import com.example.testproject.service.CommentSync;
 import com.example.testproject.service.PatientService;
+import com.example.testproject.service.SyncWatermarkService;
 import com.example.testproject.service.UserService;
 import com.example.testproject.statistics.Statistics;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,11 +32,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -39,6 +59,9 @@ public class NoteServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private HttpClient httpClient;
+
     @Mock
     private UserService userService;
 
@@ -48,53 +71,417 @@ public class NoteServiceImplTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private NoteJdbcRepository noteJdbcRepository;
+
+    @Mock
+    private SyncWatermarkService syncWatermarkService;
+
     @Mock
     private Statistics statistics;
 
+    private ThreadPoolTaskExecutor noteSyncExecutor;
+
+    private ThreadPoolTaskExecutor noteWriteExecutor;
+
     private NoteServiceImpl noteService;
 
     @BeforeEach
     void setUp() {
+        noteSyncExecutor = new ThreadPoolTaskExecutor();
+        noteSyncExecutor.setCorePoolSize(4);
+        noteSyncExecutor.initialize();
+        noteWriteExecutor = new ThreadPoolTaskExecutor();
+        noteWriteExecutor.setCorePoolSize(2);
+        noteWriteExecutor.initialize();
+
         // must be done this way because of @Value in NoteServiceImpl constructor
         // mockito try to parse '@Value("${THREAD_COUNT:4}") int threadCount' to int value
         // but fails because 'threadCount' got nothing
         // test class for 'ClientServiceImpl' is ok because CLIENT_URL just gets null
         // but this cannot be used with int field 'threadCount'
-        String oldSystemHost = "localhost";
-        int threadCount = 4;
-        noteService = new NoteServiceImpl(validator, restTemplate, userService,
-                patientService, noteRepository, statistics, oldSystemHost, threadCount);
+        noteService = noteServiceBuilder().build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        noteSyncExecutor.shutdown();
+        noteWriteExecutor.shutdown();
+    }
+
+    private NoteServiceBuilder noteServiceBuilder() {
+        return new NoteServiceBuilder();
+    }
+
+    // settings not touched by a test keep their defaults, so every test names only what it checks
+    private class NoteServiceBuilder {
+        private boolean incrementalSync;
+        private boolean asyncFetch;
+        private int noteCommitChunkSize = 1000;
+        private String writePath = "jdbc";
+        private int dbWriterCount;
+
+        NoteServiceBuilder incrementalSync() {
+            incrementalSync = true;
+            return this;
+        }
+
+        NoteServiceBuilder asyncFetch() {
+            asyncFetch = true;
+            return this;
+        }
+
+        NoteServiceBuilder noteCommitChunkSize(int noteCommitChunkSize) {
+            this.noteCommitChunkSize = noteCommitChunkSize;
+            return this;
+        }
+
+        NoteServiceBuilder writePath(String writePath) {
+            this.writePath = writePath;
+            return this;
+        }
+
+        NoteServiceBuilder dbWriterCount(int dbWriterCount) {
+            this.dbWriterCount = dbWriterCount;
+            return this;
+        }
+
+        NoteServiceImpl build() {
+            String oldSystemAddress = "localhost:8080";
+            int threadCount = 4;
+            int commentBatchSize = 2;
+            int commentChangesPageSize = 2;
+            long watermarkOverlapSeconds = 60;
+            int maxInFlightFetches = 2;
+            int noteWriteQueueCapacity = 2;
+            ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+            return new NoteServiceImpl(validator, restTemplate, httpClient, objectMapper, noteSyncExecutor,
+                    noteWriteExecutor, userService, patientService, noteRepository, noteJdbcRepository,
+                    syncWatermarkService, statistics, oldSystemAddress, threadCount, commentBatchSize,
+                    incrementalSync, commentChangesPageSize, watermarkOverlapSeconds, asyncFetch, maxInFlightFetches,
+                    noteCommitChunkSize, writePath, dbWriterCount, noteWriteQueueCapacity, "auto");
+        }
     }
 
     @Test
     @DisplayName("Testing concurrent note synchronization")
-    public void testConcurrentNoteSynchronization() throws ExecutionException, InterruptedException {
+    public void testConcurrentNoteSynchronization() throws Exception {
         List<ClientDto> clientData = List.of(
                 ClientDto.builder().guid(UUID.randomUUID()).build(),
                 ClientDto.builder().guid(UUID.randomUUID()).build(),
                 ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
                 ClientDto.builder().guid(UUID.randomUUID()).build()
         );
 
         NoteServiceImpl spy = spy(noteService);
         doNothing()
                 .when(spy)
-                .synchronizeNotes(any());
+                .synchronizeNotes(any(), any());
 
         spy.synchronizeNotesConcurrently(clientData);
 
+        // patient statuses are resolved once for all threads
+        verify(patientService, times(1)).findPatientStatusesByClientGuid();
+
+        // clients are taken by workers in chunks of comment batch size
         ArgumentCaptor<List<ClientDto>> captor = ArgumentCaptor.forClass(List.class);
-        verify(spy, times(clientData.size())).synchronizeNotes(captor.capture());
+        verify(spy, times(3)).synchronizeNotes(captor.capture(), any());
+
+        // busy time of every chunk and utilization of every worker are recorded as meters
+        verify(statistics, times(3)).recordWorkerChunk(anyString(), anyLong());
+        verify(statistics, times(4)).recordWorkerUtilization(anyString(), anyDouble());
 
         Set<UUID> uuids = new HashSet<>();
         captor.getAllValues().forEach(arg -> {
-            boolean isConsistOfOne = arg.size() == 1;
-            Assertions.assertTrue(isConsistOfOne);
-
-            boolean isUniqueClient = !uuids.contains(arg.get(0).guid());
-            Assertions.assertTrue(isUniqueClient);
-            uuids.add(arg.get(0).guid());
+            boolean isChunkSized = arg.size() <= 2;
+            Assertions.assertTrue(isChunkSized);
+
+            arg.forEach(client -> {
+                boolean isUniqueClient = !uuids.contains(client.guid());
+                Assertions.assertTrue(isUniqueClient);
+                uuids.add(client.guid());
+            });
         });
+        Assertions.assertEquals(clientData.size(), uuids.size());
+    }
+
+    @Test
+    @DisplayName("Testing incremental synchronization. Without watermark comments are fetched by client batches")
+    public void testIncrementalSynchronizationWithoutWatermark() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().incrementalSync().build());
+
+        ClientDto client = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(LocalDateTime.now())
+                .build();
+        LocalDateTime lastChange = LocalDateTime.now().minusDays(1);
+        CommentResponseDto comment = CommentResponseDto.builder()
+                .guid(UUID.randomUUID())
+                .clientGuid(client.guid())
+                .createdDateTime(lastChange.minusDays(1))
+                .modifiedDateTime(lastChange)
+                .build();
+
+        when(syncWatermarkService.findWatermark(any())).thenReturn(Optional.empty());
+        when(statistics.getFailedCommentFetches()).thenReturn(new LongAdder());
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(List.of(client)));
+        doReturn(Map.of(client.guid(), List.of(comment)))
+                .when(spy)
+                .fetchClientCommentsBatch(List.of(client.guid()));
+
+        spy.synchronizeNotesConcurrently(List.of(client));
+
+        // the whole last year of the changes feed is never held in memory
+        verify(spy, never()).fetchCommentChanges(any());
+        verify(spy, times(1)).fetchClientCommentsBatch(List.of(client.guid()));
+        verify(syncWatermarkService, times(1)).saveSyncedClients(any(), eq(Set.of()), eq(Set.of(client.guid())));
+        verify(syncWatermarkService, times(1)).saveWatermark(any(), eq(lastChange));
+    }
+
+    @Test
+    @DisplayName("Testing incremental synchronization. Clients not synced up to watermark are fetched fully")
+    public void testIncrementalSynchronizationWithNewClient() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().incrementalSync().build());
+
+        LocalDateTime watermark = LocalDateTime.now().minusHours(1);
+        ClientDto knownClient = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(watermark.minusDays(1))
+                .build();
+        ClientDto newClient = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(watermark.plusMinutes(1))
+                .build();
+
+        when(syncWatermarkService.findWatermark(any())).thenReturn(Optional.of(watermark));
+        when(syncWatermarkService.findSyncedClients(any())).thenReturn(Set.of(knownClient.guid()));
+        when(statistics.getFailedCommentFetches()).thenReturn(new LongAdder());
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(List.of(knownClient, newClient)));
+        doReturn(Map.of())
+                .when(spy)
+                .fetchCommentChanges(watermark.minusSeconds(60));
+        doReturn(Map.of())
+                .when(spy)
+                .fetchClientCommentsBatch(any());
+
+        spy.synchronizeNotesConcurrently(List.of(knownClient, newClient));
+
+        verify(spy, times(1)).fetchClientCommentsBatch(List.of(newClient.guid()));
+        verify(syncWatermarkService, times(1)).saveSyncedClients(any(), eq(Set.of(knownClient.guid())),
+                eq(Set.of(knownClient.guid(), newClient.guid())));
+        // nothing changed, so there is no newer watermark
+        verify(syncWatermarkService, never()).saveWatermark(any(), any());
+    }
+
+    @Test
+    @DisplayName("Testing incremental synchronization. Client became active is fetched fully, inactive one is not synced")
+    public void testIncrementalSynchronizationWithReactivatedClient() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().incrementalSync().build());
+
+        LocalDateTime watermark = LocalDateTime.now().minusHours(1);
+        ClientDto syncedClient = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(watermark.minusDays(10))
+                .build();
+        // was inactive during previous runs, its old comments are not in the changes feed
+        ClientDto reactivatedClient = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(watermark.minusDays(10))
+                .build();
+        ClientDto deactivatedClient = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(watermark.minusDays(10))
+                .build();
+        CommentResponseDto oldComment = CommentResponseDto.builder()
+                .guid(UUID.randomUUID())
+                .clientGuid(reactivatedClient.guid())
+                .createdDateTime(watermark.minusDays(5))
+                .build();
+        CommentResponseDto changedComment = CommentResponseDto.builder()
+                .guid(UUID.randomUUID())
+                .clientGuid(syncedClient.guid())
+                .createdDateTime(watermark.plusMinutes(5))
+                .build();
+
+        Map<UUID, PatientStatusDto> statuses = activeStatuses(List.of(syncedClient, reactivatedClient));
+        statuses.put(deactivatedClient.guid(), new PatientStatusDto(2L, Status.INACTIVE));
+
+        when(syncWatermarkService.findWatermark(any())).thenReturn(Optional.of(watermark));
+        when(syncWatermarkService.findSyncedClients(any()))
+                .thenReturn(Set.of(syncedClient.guid(), deactivatedClient.guid()));
+        when(statistics.getFailedCommentFetches()).thenReturn(new LongAdder());
+        when(patientService.findPatientStatusesByClientGuid()).thenReturn(statuses);
+        doReturn(Map.of(syncedClient.guid(), List.of(changedComment)))
+                .when(spy)
+                .fetchCommentChanges(watermark.minusSeconds(60));
+        doReturn(Map.of(reactivatedClient.guid(), new ArrayList<>(List.of(oldComment))))
+                .when(spy)
+                .fetchClientCommentsBatch(any());
+        doReturn(List.of())
+                .when(spy)
+                .findNewAndUpdatedNotes(any(), any());
+
+        spy.synchronizeNotesConcurrently(List.of(syncedClient, reactivatedClient, deactivatedClient));
+
+        verify(spy, times(1)).fetchClientCommentsBatch(List.of(reactivatedClient.guid()));
+        verify(spy).findNewAndUpdatedNotes(eq(Map.of(
+                syncedClient.guid(), List.of(changedComment),
+                reactivatedClient.guid(), List.of(oldComment)
+        )), any());
+        // deactivated client gets a full fetch too when it is active again
+        verify(syncWatermarkService, times(1)).saveSyncedClients(any(),
+                eq(Set.of(syncedClient.guid(), deactivatedClient.guid())),
+                eq(Set.of(syncedClient.guid(), reactivatedClient.guid())));
+        // full fetches don't move the watermark, only the changes feed does
+        verify(syncWatermarkService, times(1)).saveWatermark(any(), eq(changedComment.createdDateTime()));
+    }
+
+    @Test
+    @DisplayName("Testing comment sync of an engine. Changes feed is used and watermark moves only on completion")
+    public void testCommentSyncWithWatermark() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().incrementalSync().build());
+
+        LocalDateTime watermark = LocalDateTime.now().minusHours(1);
+        ClientDto syncedClient = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(watermark.minusDays(10))
+                .build();
+        CommentResponseDto changedComment = CommentResponseDto.builder()
+                .guid(UUID.randomUUID())
+                .clientGuid(syncedClient.guid())
+                .createdDateTime(watermark.plusMinutes(5))
+                .build();
+
+        when(syncWatermarkService.findWatermark(any())).thenReturn(Optional.of(watermark));
+        when(syncWatermarkService.findSyncedClients(any())).thenReturn(Set.of(syncedClient.guid()));
+        when(statistics.getFailedCommentFetches()).thenReturn(new LongAdder());
+        doReturn(Map.of(syncedClient.guid(), List.of(changedComment)))
+                .when(spy)
+                .fetchCommentChanges(watermark.minusSeconds(60));
+        doReturn(List.of())
+                .when(spy)
+                .findNewAndUpdatedNotes(any(), any());
+
+        CommentSync commentSync = spy.startCommentSync(true);
+        spy.synchronizeNotes(List.of(syncedClient), activeStatuses(List.of(syncedClient)), commentSync);
+
+        Assertions.assertFalse(commentSync.isInitialLoad());
+        verify(spy, never()).fetchClientCommentsBatchAsync(any());
+        verify(spy).findNewAndUpdatedNotes(eq(Map.of(syncedClient.guid(), List.of(changedComment))), any());
+        verify(syncWatermarkService, never()).saveWatermark(any(), any());
+
+        commentSync.complete();
+
+        verify(syncWatermarkService, times(1)).saveSyncedClients(any(), eq(Set.of(syncedClient.guid())),
+                eq(Set.of(syncedClient.guid())));
+        verify(syncWatermarkService, times(1)).saveWatermark(any(), eq(changedComment.createdDateTime()));
+    }
+
+    @Test
+    @DisplayName("Testing comment sync of an engine. Empty note table is loaded fully in spite of the watermark")
+    public void testCommentSyncWithInitialLoad() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().incrementalSync().build());
+
+        LocalDateTime lastChange = LocalDateTime.now();
+        ClientDto client = ClientDto.builder().guid(UUID.randomUUID()).build();
+        CommentResponseDto comment = CommentResponseDto.builder()
+                .guid(UUID.randomUUID())
+                .clientGuid(client.guid())
+                .loggedUser("login")
+                .createdDateTime(lastChange.minusDays(1))
+                .modifiedDateTime(lastChange)
+                .build();
+
+        when(noteJdbcRepository.isEmpty()).thenReturn(true);
+        when(statistics.getFailedCommentFetches()).thenReturn(new LongAdder());
+        when(userService.createUsersIfNotExist(any()))
+                .thenReturn(Map.of("login", new User()));
+        doReturn(Map.of(client.guid(), new ArrayList<>(List.of(comment))))
+                .when(spy)
+                .fetchClientCommentsBatch(List.of(client.guid()));
+
+        CommentSync commentSync = spy.startCommentSync(false);
+        spy.synchronizeNotes(List.of(client), activeStatuses(List.of(client)), commentSync);
+        commentSync.complete();
+
+        Assertions.assertTrue(commentSync.isInitialLoad());
+        verify(syncWatermarkService, never()).findWatermark(any());
+        verify(spy, never()).fetchCommentChanges(any());
+        verify(noteRepository, never()).findByCommentIdIn(any());
+        verify(noteJdbcRepository, times(1)).copyNotes(argThat(notes -> notes.size() == 1));
+        verify(syncWatermarkService, times(1)).saveWatermark(any(), eq(lastChange));
+    }
+
+    @Test
+    @DisplayName("Testing incremental synchronization. Watermark is kept when comment fetch failed")
+    public void testIncrementalSynchronizationWithFailedFetch() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().incrementalSync().build());
+
+        LocalDateTime watermark = LocalDateTime.now().minusHours(1);
+        ClientDto newClient = ClientDto.builder()
+                .guid(UUID.randomUUID())
+                .createdDateTime(watermark.plusMinutes(1))
+                .build();
+        CommentResponseDto comment = CommentResponseDto.builder()
+                .guid(UUID.randomUUID())
+                .clientGuid(UUID.randomUUID())
+                .createdDateTime(watermark.plusMinutes(5))
+                .build();
+
+        LongAdder failedFetches = new LongAdder();
+        when(syncWatermarkService.findWatermark(any())).thenReturn(Optional.of(watermark));
+        when(statistics.getFailedCommentFetches()).thenReturn(failedFetches);
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(List.of(newClient)));
+        doReturn(Map.of(comment.clientGuid(), List.of(comment)))
+                .when(spy)
+                .fetchCommentChanges(any());
+        doAnswer(invocation -> {
+            failedFetches.increment();
+            return Map.of();
+        }).when(spy).fetchClientCommentsBatch(any());
+
+        spy.synchronizeNotesConcurrently(List.of(newClient));
+
+        verify(syncWatermarkService, never()).saveSyncedClients(any(), any(), any());
+        verify(syncWatermarkService, never()).saveWatermark(any(), any());
+    }
+
+    @Test
+    @DisplayName("Fetching comment changes page by page")
+    public void testFetchCommentChangesWithSeveralPages() throws ConnectionException {
+        UUID clientGuid = UUID.randomUUID();
+        CommentResponseDto first = CommentResponseDto.builder().guid(UUID.randomUUID()).clientGuid(clientGuid).build();
+        CommentResponseDto second = CommentResponseDto.builder().guid(UUID.randomUUID()).clientGuid(clientGuid).build();
+        CommentResponseDto third = CommentResponseDto.builder().guid(UUID.randomUUID()).clientGuid(UUID.randomUUID()).build();
+        LocalDateTime cursorTime = LocalDateTime.now();
+
+        when(restTemplate.postForEntity(anyString(), any(), eq(CommentChangesDto.class)))
+                .thenReturn(new ResponseEntity<>(new CommentChangesDto(List.of(first, second), cursorTime, second.guid(), true), HttpStatus.OK))
+                .thenReturn(new ResponseEntity<>(new CommentChangesDto(List.of(third), cursorTime, third.guid(), false), HttpStatus.OK));
+
+        Map<UUID, List<CommentResponseDto>> result = noteService.fetchCommentChanges(null);
+
+        Assertions.assertEquals(2, result.get(clientGuid).size());
+        Assertions.assertEquals(1, result.get(third.clientGuid()).size());
+
+        ArgumentCaptor<CommentChangesRequestDto> captor = ArgumentCaptor.forClass(CommentChangesRequestDto.class);
+        verify(restTemplate, times(2)).postForEntity(anyString(), captor.capture(), eq(CommentChangesDto.class));
+        Assertions.assertNull(captor.getAllValues().get(0).getSince());
+        Assertions.assertEquals(cursorTime, captor.getAllValues().get(1).getSince());
+        Assertions.assertEquals(second.guid(), captor.getAllValues().get(1).getAfterId());
+    }
+
+    @Test
+    @DisplayName("Trying to fetch comment changes with unreachable source")
+    public void testFetchCommentChangesWithUnreachableSource() {
+        when(restTemplate.postForEntity(anyString(), any(), eq(CommentChangesDto.class)))
+                .thenThrow(new RestClientException("Unreachable"));
+
+        Assertions.assertThrows(ConnectionException.class, () -> noteService.fetchCommentChanges(null));
     }
 
     @Test
@@ -109,29 +496,24 @@ public class NoteServiceImplTest {
 
         NoteServiceImpl spy = spy(noteService);
 
-        List<CommentResponseDto> response = List.of(CommentResponseDto.builder().build());
-        doReturn(response)
-                .when(spy)
-                .fetchClientComments(clientData.get(0).guid(), clientData.get(0).agency());
-        doNothing()
-                .when(spy)
-                .filterInvalidCommentData(any());
-
         Patient inactivePatient = Patient.builder()
+                .id(1L)
                 .status(Status.INACTIVE)
                 .build();
 
-        when(patientService.findPatientByClientGuid(any()))
-                .thenReturn(inactivePatient);
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(clientData.get(0).guid(), new PatientStatusDto(inactivePatient.getId(), inactivePatient.getStatus())));
 
         spy.synchronizeNotes(clientData);
 
-        verify(userService, never()).createUserIfNotExists(any());
-        verify(noteRepository, never()).existsByCommentId(any());
+        // comments of inactive patient are not requested
+        verify(spy, never()).fetchClientCommentsBatch(any());
+        verify(statistics, times(1)).addSkippedCommentFetches(1);
+        verify(userService, never()).createUsersIfNotExist(any());
         verify(statistics, never()).addNewNotes(anyInt());
 
         ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
-        verify(noteRepository, times(1)).saveAll(captor.capture());
+        verify(noteJdbcRepository, times(1)).upsertNotes(captor.capture());
 
         Assertions.assertTrue(captor.getValue().isEmpty());
     }
@@ -148,33 +530,55 @@ public class NoteServiceImplTest {
 
         NoteServiceImpl spy = spy(noteService);
 
-        List<CommentResponseDto> response = List.of(CommentResponseDto.builder().build());
-        doReturn(response)
-                .when(spy)
-                .fetchClientComments(clientData.get(0).guid(), clientData.get(0).agency());
-        doNothing()
-                .when(spy)
-                .filterInvalidCommentData(any());
-
         Patient inactivePatient = Patient.builder()
+                .id(1L)
                 .status(Status.INACTIVE)
                 .build();
 
-        when(patientService.findPatientByClientGuid(any()))
-                .thenReturn(inactivePatient);
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(clientData.get(0).guid(), new PatientStatusDto(inactivePatient.getId(), inactivePatient.getStatus())));
 
         spy.synchronizeNotes(clientData);
 
-        verify(userService, never()).createUserIfNotExists(any());
-        verify(noteRepository, never()).existsByCommentId(any());
+        // comments of inactive patient are not requested
+        verify(spy, never()).fetchClientCommentsBatch(any());
+        verify(statistics, times(1)).addSkippedCommentFetches(1);
+        verify(userService, never()).createUsersIfNotExist(any());
         verify(statistics, never()).addNewNotes(anyInt());
 
         ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
-        verify(noteRepository, times(1)).saveAll(captor.capture());
+        verify(noteJdbcRepository, times(1)).upsertNotes(captor.capture());
 
         Assertions.assertTrue(captor.getValue().isEmpty());
     }
 
+    @Test
+    @DisplayName("Testing note synchronization. Only clients of active patients are fetched")
+    public void testNoteSynchronizeFetchesOnlyActivePatientClients() {
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build()
+        );
+
+        NoteServiceImpl spy = spy(noteService);
+        doReturn(Map.of())
+                .when(spy)
+                .fetchClientCommentsBatch(any());
+
+        // third client has no patient mapping
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(
+                        clientData.get(0).guid(), new PatientStatusDto(1L, Status.INACTIVE),
+                        clientData.get(1).guid(), new PatientStatusDto(2L, Status.ACTIVE)
+                ));
+
+        spy.synchronizeNotes(clientData);
+
+        verify(spy, times(1)).fetchClientCommentsBatch(List.of(clientData.get(1).guid()));
+        verify(statistics, times(1)).addSkippedCommentFetches(2);
+    }
+
     @Test
     @DisplayName("Testing simple note synchronization. Comment patient is active. Note already exists")
     public void testNoteSynchronizeWithActivePatientAndExistingNote() {
@@ -190,39 +594,167 @@ public class NoteServiceImplTest {
                 .status(Status.ACTIVE)
                 .build();
 
+        UUID commentId = UUID.randomUUID();
         Note note = new Note();
+        note.setCommentId(commentId);
         note.setPatient(patient);
 
         NoteServiceImpl spy = spy(noteService);
 
-        List<CommentResponseDto> response = List.of(CommentResponseDto.builder().build());
-        doReturn(response)
+        List<CommentResponseDto> response = List.of(CommentResponseDto.builder()
+                .guid(commentId)
+                .clientGuid(clientData.get(0).guid())
+                .loggedUser("login")
+                .build());
+        doReturn(Map.of(clientData.get(0).guid(), response))
                 .when(spy)
-                .fetchClientComments(clientData.get(0).guid(), clientData.get(0).agency());
+                .fetchClientCommentsBatch(List.of(clientData.get(0).guid()));
         doNothing()
                 .when(spy)
                 .filterInvalidCommentData(any());
 
-        when(patientService.findPatientByClientGuid(any()))
-                .thenReturn(patient);
-        when(userService.createUserIfNotExists(any()))
-                .thenReturn(new User());
-        when(noteRepository.existsByCommentId(any()))
-                .thenReturn(true);
-        when(noteRepository.findByCommentId(any()))
-                .thenReturn(note);
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(clientData.get(0).guid(), new PatientStatusDto(patient.getId(), patient.getStatus())));
+        when(noteJdbcRepository.findFingerprintsByCommentIds(List.of(commentId)))
+                .thenReturn(Map.of(commentId, NoteServiceImpl.fingerprint(response.get(0), patient.getId())));
+
+        spy.synchronizeNotes(clientData);
+
+        // comment is unchanged, neither note nor user is loaded
+        verify(userService, never()).createUsersIfNotExist(any());
+        verify(noteRepository, never()).findByCommentIdIn(any());
+        verify(statistics, never()).addNewNotes(anyInt());
+        verify(statistics, never()).addUpdatedNotes(anyInt());
+
+        // note is unchanged, nothing to write
+        ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
+        verify(noteJdbcRepository, times(1)).upsertNotes(captor.capture());
+
+        Assertions.assertTrue(captor.getValue().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Testing simple note synchronization. Comment patient is active. Existing note is outdated")
+    public void testNoteSynchronizeWithActivePatientAndOutdatedNote() {
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder()
+                        .guid(UUID.randomUUID())
+                        .agency("a")
+                        .build()
+        );
+
+        Patient patient = Patient.builder()
+                .id(1L)
+                .status(Status.ACTIVE)
+                .build();
+
+        User user = new User();
+        user.setLogin("login");
+
+        UUID commentId = UUID.randomUUID();
+        Note note = new Note();
+        note.setCommentId(commentId);
+        note.setPatient(patient);
+        note.setCreatedBy(user);
+        note.setNote("old text");
+
+        NoteServiceImpl spy = spy(noteService);
+
+        List<CommentResponseDto> response = List.of(CommentResponseDto.builder()
+                .guid(commentId)
+                .clientGuid(clientData.get(0).guid())
+                .loggedUser("login")
+                .comments("new text")
+                .modifiedDateTime(LocalDateTime.now())
+                .build());
+        doReturn(Map.of(clientData.get(0).guid(), response))
+                .when(spy)
+                .fetchClientCommentsBatch(List.of(clientData.get(0).guid()));
+        doNothing()
+                .when(spy)
+                .filterInvalidCommentData(any());
+
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(clientData.get(0).guid(), new PatientStatusDto(patient.getId(), patient.getStatus())));
+        when(userService.createUsersIfNotExist(Set.of("login")))
+                .thenReturn(Map.of("login", user));
+        when(noteJdbcRepository.findFingerprintsByCommentIds(List.of(commentId)))
+                .thenReturn(Map.of(commentId, "outdated"));
+        when(noteRepository.findByCommentIdIn(List.of(commentId)))
+                .thenReturn(List.of(note));
 
         spy.synchronizeNotes(clientData);
 
-        verify(userService, times(1)).createUserIfNotExists(any());
-        verify(noteRepository, times(1)).existsByCommentId(any());
-        verify(noteRepository, times(1)).findByCommentId(any());
         verify(statistics, never()).addNewNotes(anyInt());
+        verify(statistics, times(1)).addUpdatedNotes(1);
 
         ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
-        verify(noteRepository, times(1)).saveAll(captor.capture());
+        verify(noteJdbcRepository, times(1)).upsertNotes(captor.capture());
 
         Assertions.assertEquals(1, captor.getValue().size());
+        Assertions.assertEquals("new text", captor.getValue().get(0).getNote());
+        Assertions.assertEquals(NoteServiceImpl.fingerprint(response.get(0), patient.getId()),
+                captor.getValue().get(0).getFingerprint());
+    }
+
+    @Test
+    @DisplayName("Testing simple note synchronization. Comment patient is active. Existing note has no fingerprint")
+    public void testNoteSynchronizeWithActivePatientAndNoteWithoutFingerprint() {
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder()
+                        .guid(UUID.randomUUID())
+                        .agency("a")
+                        .build()
+        );
+
+        Patient patient = Patient.builder()
+                .id(1L)
+                .status(Status.ACTIVE)
+                .build();
+
+        UUID commentId = UUID.randomUUID();
+        Note note = new Note();
+        note.setCommentId(commentId);
+        note.setPatient(patient);
+
+        NoteServiceImpl spy = spy(noteService);
+
+        List<CommentResponseDto> response = List.of(CommentResponseDto.builder()
+                .guid(commentId)
+                .clientGuid(clientData.get(0).guid())
+                .loggedUser("login")
+                .build());
+        doReturn(Map.of(clientData.get(0).guid(), response))
+                .when(spy)
+                .fetchClientCommentsBatch(List.of(clientData.get(0).guid()));
+        doNothing()
+                .when(spy)
+                .filterInvalidCommentData(any());
+
+        Map<UUID, String> storedFingerprints = new HashMap<>();
+        storedFingerprints.put(commentId, null);
+
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(clientData.get(0).guid(), new PatientStatusDto(patient.getId(), patient.getStatus())));
+        when(noteJdbcRepository.findFingerprintsByCommentIds(List.of(commentId)))
+                .thenReturn(storedFingerprints);
+        when(userService.createUsersIfNotExist(Set.of("login")))
+                .thenReturn(Map.of("login", new User()));
+        when(noteRepository.findByCommentIdIn(List.of(commentId)))
+                .thenReturn(List.of(note));
+
+        spy.synchronizeNotes(clientData);
+
+        verify(statistics, never()).addNewNotes(anyInt());
+        verify(statistics, never()).addUpdatedNotes(anyInt());
+
+        // note content is unchanged, only fingerprint is written
+        ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
+        verify(noteJdbcRepository, times(1)).upsertNotes(captor.capture());
+
+        Assertions.assertEquals(1, captor.getValue().size());
+        Assertions.assertSame(note, captor.getValue().get(0));
+        Assertions.assertEquals(NoteServiceImpl.fingerprint(response.get(0), patient.getId()), note.getFingerprint());
     }
 
     @Test
@@ -236,36 +768,305 @@ public class NoteServiceImplTest {
         );
 
         Patient patient = Patient.builder()
+                .id(1L)
                 .status(Status.ACTIVE)
                 .build();
 
         NoteServiceImpl spy = spy(noteService);
 
-        List<CommentResponseDto> response = List.of(CommentResponseDto.builder().build());
-        doReturn(response)
+        List<CommentResponseDto> response = List.of(CommentResponseDto.builder()
+                .guid(UUID.randomUUID())
+                .clientGuid(clientData.get(0).guid())
+                .loggedUser("login")
+                .build());
+        doReturn(Map.of(clientData.get(0).guid(), response))
                 .when(spy)
-                .fetchClientComments(clientData.get(0).guid(), clientData.get(0).agency());
+                .fetchClientCommentsBatch(List.of(clientData.get(0).guid()));
         doNothing()
                 .when(spy)
                 .filterInvalidCommentData(any());
 
-        when(patientService.findPatientByClientGuid(any()))
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(clientData.get(0).guid(), new PatientStatusDto(patient.getId(), patient.getStatus())));
+        when(userService.createUsersIfNotExist(Set.of("login")))
+                .thenReturn(Map.of("login", new User()));
+        when(patientService.getPatientReference(1L))
                 .thenReturn(patient);
-        when(userService.createUserIfNotExists(any()))
-                .thenReturn(new User());
-        when(noteRepository.existsByCommentId(any()))
-                .thenReturn(false);
 
         spy.synchronizeNotes(clientData);
 
-        verify(userService, times(1)).createUserIfNotExists(any());
-        verify(noteRepository, times(1)).existsByCommentId(any());
+        // comment has no stored fingerprint, so there is no note to load
+        verify(userService, times(1)).createUsersIfNotExist(Set.of("login"));
+        verify(noteRepository, never()).findByCommentIdIn(any());
         verify(statistics, times(1)).addNewNotes(1);
 
         ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
-        verify(noteRepository, times(1)).saveAll(captor.capture());
+        verify(noteJdbcRepository, times(1)).upsertNotes(captor.capture());
 
         Assertions.assertEquals(1, captor.getValue().size());
+        Assertions.assertSame(patient, captor.getValue().get(0).getPatient());
+        Assertions.assertEquals(NoteServiceImpl.fingerprint(response.get(0), patient.getId()),
+                captor.getValue().get(0).getFingerprint());
+    }
+
+    @Test
+    @DisplayName("Testing note synchronization. Comments are fetched in batches")
+    public void testNoteSynchronizeFetchesCommentsInBatches() {
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build()
+        );
+
+        NoteServiceImpl spy = spy(noteService);
+        doReturn(Map.of())
+                .when(spy)
+                .fetchClientCommentsBatch(any());
+
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(clientData));
+
+        spy.synchronizeNotes(clientData);
+
+        verify(spy, times(1))
+                .fetchClientCommentsBatch(List.of(clientData.get(0).guid(), clientData.get(1).guid()));
+        verify(spy, times(1))
+                .fetchClientCommentsBatch(List.of(clientData.get(2).guid()));
+    }
+
+    @Test
+    @DisplayName("Testing note synchronization. Notes are committed in chunks")
+    public void testNoteSynchronizeCommitsNotesInChunks() {
+        NoteServiceImpl spy = spy(noteServiceBuilder().noteCommitChunkSize(2).build());
+
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build()
+        );
+
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(clientData));
+        when(userService.createUsersIfNotExist(any()))
+                .thenReturn(Map.of("login", new User()));
+        doAnswer(invocation -> {
+            List<UUID> clientGuids = invocation.getArgument(0);
+            Map<UUID, List<CommentResponseDto>> comments = new HashMap<>();
+            clientGuids.forEach(clientGuid -> comments.put(clientGuid, new ArrayList<>(List.of(
+                    CommentResponseDto.builder()
+                            .guid(UUID.randomUUID())
+                            .clientGuid(clientGuid)
+                            .loggedUser("login")
+                            .build()
+            ))));
+            return comments;
+        }).when(spy).fetchClientCommentsBatch(any());
+
+        spy.synchronizeNotes(clientData);
+
+        // first batch fills the chunk and is committed before the second one is fetched
+        ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
+        verify(noteJdbcRepository, times(2)).upsertNotes(captor.capture());
+
+        Assertions.assertEquals(2, captor.getAllValues().get(0).size());
+        Assertions.assertEquals(1, captor.getAllValues().get(1).size());
+    }
+
+    @Test
+    @DisplayName("Testing note synchronization with dedicated writers. Workers only enqueue note diffs")
+    public void testNoteSynchronizeWithDedicatedWriters() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().dbWriterCount(1).build());
+
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build()
+        );
+
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(clientData));
+        when(userService.createUsersIfNotExist(any()))
+                .thenReturn(Map.of("login", new User()));
+        doAnswer(invocation -> {
+            List<UUID> clientGuids = invocation.getArgument(0);
+            Map<UUID, List<CommentResponseDto>> comments = new HashMap<>();
+            clientGuids.forEach(clientGuid -> comments.put(clientGuid, new ArrayList<>(List.of(
+                    CommentResponseDto.builder()
+                            .guid(UUID.randomUUID())
+                            .clientGuid(clientGuid)
+                            .loggedUser("login")
+                            .build(),
+                    CommentResponseDto.builder()
+                            .guid(UUID.randomUUID())
+                            .clientGuid(clientGuid)
+                            .loggedUser("login")
+                            .build()
+            ))));
+            return comments;
+        }).when(spy).fetchClientCommentsBatch(any());
+
+        spy.synchronizeNotesConcurrently(clientData);
+
+        verify(spy, never()).synchronizeNotes(any(), any());
+        verify(statistics, times(10)).addNewNotes(1);
+
+        ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
+        verify(noteJdbcRepository, atLeastOnce()).upsertNotes(captor.capture());
+
+        Assertions.assertEquals(10, captor.getAllValues().stream().mapToInt(List::size).sum());
+        captor.getAllValues().forEach(notes -> {
+            List<UUID> commentIds = notes.stream().map(Note::getCommentId).toList();
+            Assertions.assertEquals(commentIds.stream().sorted().toList(), commentIds);
+        });
+    }
+
+    @Test
+    @DisplayName("Testing initial load. Notes are copied into empty table without lookups")
+    public void testInitialLoadIntoEmptyNoteTable() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().incrementalSync().build());
+
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build()
+        );
+        LocalDateTime lastChange = LocalDateTime.now();
+
+        when(noteJdbcRepository.isEmpty()).thenReturn(true);
+        when(statistics.getFailedCommentFetches()).thenReturn(new LongAdder());
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(clientData));
+        when(userService.createUsersIfNotExist(any()))
+                .thenReturn(Map.of("login", new User()));
+        doAnswer(invocation -> {
+            List<UUID> clientGuids = invocation.getArgument(0);
+            Map<UUID, List<CommentResponseDto>> comments = new HashMap<>();
+            clientGuids.forEach(clientGuid -> comments.put(clientGuid, new ArrayList<>(List.of(
+                    CommentResponseDto.builder()
+                            .guid(UUID.randomUUID())
+                            .clientGuid(clientGuid)
+                            .loggedUser("login")
+                            .createdDateTime(lastChange.minusDays(1))
+                            .modifiedDateTime(lastChange)
+                            .build()
+            ))));
+            return comments;
+        }).when(spy).fetchClientCommentsBatch(any());
+
+        spy.synchronizeNotesConcurrently(clientData);
+
+        // changes feed and per note lookups are skipped
+        verify(spy, never()).fetchCommentChanges(any());
+        verify(noteJdbcRepository, never()).findFingerprintsByCommentIds(any());
+        verify(noteRepository, never()).findByCommentIdIn(any());
+        verify(noteJdbcRepository, never()).upsertNotes(any());
+
+        ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
+        verify(noteJdbcRepository, times(2)).copyNotes(captor.capture());
+        Assertions.assertEquals(3, captor.getAllValues().stream().mapToInt(List::size).sum());
+        captor.getAllValues().stream()
+                .flatMap(List::stream)
+                .forEach(note -> Assertions.assertNotNull(note.getFingerprint()));
+
+        // next incremental run continues from loaded comments
+        verify(syncWatermarkService, times(1)).saveSyncedClients(any(), eq(Set.of()),
+                eq(Set.of(clientData.get(0).guid(), clientData.get(1).guid(), clientData.get(2).guid())));
+        verify(syncWatermarkService, times(1)).saveWatermark(any(), eq(lastChange));
+    }
+
+    @Test
+    @DisplayName("Testing note saving. Notes are written by configured write path")
+    public void testSaveNotesWithWritePath() {
+        List<Note> notes = List.of(new Note(), new Note());
+
+        noteService.saveNotes(notes);
+        noteServiceBuilder().writePath("jpa").build().saveNotes(notes);
+
+        verify(noteJdbcRepository, times(1)).upsertNotes(notes);
+        verify(noteRepository, times(1)).saveAll(notes);
+        verify(statistics, times(2)).addNoteWrite(eq(2), anyLong());
+    }
+
+    @Test
+    @DisplayName("Testing pipelined note synchronization. Every fetched batch is written")
+    public void testPipelinedNoteSynchronization() throws Exception {
+        NoteServiceImpl spy = spy(noteServiceBuilder().asyncFetch().build());
+
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build(),
+                ClientDto.builder().guid(UUID.randomUUID()).build()
+        );
+
+        when(patientService.findPatientStatusesByClientGuid())
+                .thenReturn(activeStatuses(clientData));
+        when(userService.createUsersIfNotExist(any()))
+                .thenReturn(Map.of("login", new User()));
+        doAnswer(invocation -> {
+            List<UUID> clientGuids = invocation.getArgument(0);
+            Map<UUID, List<CommentResponseDto>> comments = new HashMap<>();
+            clientGuids.forEach(clientGuid -> comments.put(clientGuid, new ArrayList<>(List.of(
+                    CommentResponseDto.builder()
+                            .guid(UUID.randomUUID())
+                            .clientGuid(clientGuid)
+                            .loggedUser("login")
+                            .build()
+            ))));
+            return CompletableFuture.supplyAsync(() -> comments);
+        }).when(spy).fetchClientCommentsBatchAsync(any());
+
+        spy.synchronizeNotesConcurrently(clientData);
+
+        verify(spy, never()).fetchClientCommentsBatch(any());
+        verify(spy, times(3)).fetchClientCommentsBatchAsync(any());
+        verify(statistics, times(5)).addNewNotes(1);
+
+        ArgumentCaptor<List<Note>> captor = ArgumentCaptor.forClass(List.class);
+        verify(noteJdbcRepository, times(3)).upsertNotes(captor.capture());
+
+        Assertions.assertEquals(5, captor.getAllValues().stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    @DisplayName("Fetching comments batch asynchronously. Comments are grouped by client")
+    public void testFetchClientCommentsBatchAsyncWithDataReturn() throws Exception {
+        UUID clientGuid = UUID.randomUUID();
+        UUID commentGuid = UUID.randomUUID();
+        String body = """
+                [{"clientGuid":"%s","comments":[{"guid":"%s","clientGuid":"%s","comments":"text"}]}]
+                """.formatted(clientGuid, commentGuid, clientGuid);
+
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(response.body()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        doReturn(CompletableFuture.completedFuture(response))
+                .when(httpClient)
+                .sendAsync(any(), any());
+
+        NoteServiceImpl asyncNoteService = noteServiceBuilder().asyncFetch().build();
+        Map<UUID, List<CommentResponseDto>> result = asyncNoteService.fetchClientCommentsBatchAsync(List.of(clientGuid)).get();
+
+        Assertions.assertEquals(1, result.get(clientGuid).size());
+        Assertions.assertEquals(commentGuid, result.get(clientGuid).get(0).guid());
+    }
+
+    @Test
+    @DisplayName("Trying to fetch comments batch asynchronously with unreachable source")
+    public void testFetchClientCommentsBatchAsyncWithUnreachableSource() throws Exception {
+        doReturn(CompletableFuture.failedFuture(new ConnectException("Unreachable")))
+                .when(httpClient)
+                .sendAsync(any(), any());
+
+        NoteServiceImpl asyncNoteService = noteServiceBuilder().asyncFetch().build();
+        Map<UUID, List<CommentResponseDto>> result = asyncNoteService.fetchClientCommentsBatchAsync(List.of(UUID.randomUUID())).get();
+
+        Assertions.assertTrue(result.isEmpty());
+        verify(statistics, times(1)).addFailedCommentFetches(1);
     }
 
     @Test
@@ -308,6 +1109,44 @@ public class NoteServiceImplTest {
         Assertions.assertEquals(commentData[0].guid(), result.get(0).guid());
     }
 
+    @Test
+    @DisplayName("Trying to fetch comments batch with unreachable source")
+    public void testFetchClientCommentsBatchWithUnreachableSource() {
+        when(restTemplate.postForEntity(anyString(), any(), eq(ClientCommentsDto[].class)))
+                .thenThrow(new RestClientException("Unreachable"));
+
+        Map<UUID, List<CommentResponseDto>> response = noteService.fetchClientCommentsBatch(List.of(UUID.randomUUID()));
+
+        Assertions.assertTrue(response.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Fetching comments batch successfully. Comments are grouped by client")
+    public void testFetchClientCommentsBatchWithDataReturn() {
+        UUID firstClient = UUID.randomUUID();
+        UUID secondClient = UUID.randomUUID();
+        ClientCommentsDto[] commentData = new ClientCommentsDto[]{
+                new ClientCommentsDto(firstClient, List.of(
+                        CommentResponseDto.builder().guid(UUID.randomUUID()).build(),
+                        CommentResponseDto.builder().guid(UUID.randomUUID()).build()
+                )),
+                new ClientCommentsDto(secondClient, List.of(
+                        CommentResponseDto.builder().guid(UUID.randomUUID()).build()
+                ))
+        };
+
+        when(restTemplate.postForEntity(anyString(), any(), eq(ClientCommentsDto[].class)))
+                .thenReturn(new ResponseEntity<>(commentData, HttpStatus.OK));
+
+        Map<UUID, List<CommentResponseDto>> result =
+                noteService.fetchClientCommentsBatch(List.of(firstClient, secondClient));
+
+        Assertions.assertEquals(2, result.get(firstClient).size());
+        Assertions.assertEquals(1, result.get(secondClient).size());
+        // result lists must be modifiable for filtering
+        Assertions.assertDoesNotThrow(() -> result.get(firstClient).remove(0));
+    }
+
     @Test
     @DisplayName("Filtering invalid comment data. All data valid")
     public void testFilterInvalidCommentDataWithValidData() {
@@ -348,4 +1187,10 @@ public class NoteServiceImplTest {
         verify(validator, times(sizeBefore)).validate(any(CommentResponseDto.class));
         verify(statistics).addInvalidComments(1);
     }
-}
\ No newline at end of file
+
+    private static Map<UUID, PatientStatusDto> activeStatuses(List<ClientDto> clients) {
+        Map<UUID, PatientStatusDto> statuses = new HashMap<>();
+        clients.forEach(client -> statuses.put(client.guid(), new PatientStatusDto(1L, Status.ACTIVE)));
+        return statuses;
+    }
+}
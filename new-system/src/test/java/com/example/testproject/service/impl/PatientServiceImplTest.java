@@ -1,8 +1,12 @@
 package com.example.testproject.service.impl;
 
 import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
 import com.example.testproject.entity.ClientMapping;
 import com.example.testproject.entity.Patient;
+import com.example.testproject.entity.Status;
+import com.example.testproject.repository.PatientJdbcRepository;
 import com.example.testproject.repository.PatientRepository;
 import com.example.testproject.service.ClientService;
 import com.example.testproject.statistics.Statistics;
@@ -15,8 +19,9 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -27,6 +32,9 @@ public class PatientServiceImplTest {
     @Mock
     private PatientRepository patientRepository;
 
+    @Mock
+    private PatientJdbcRepository patientJdbcRepository;
+
     @Mock
     private ClientService clientService;
 
@@ -40,31 +48,35 @@ public class PatientServiceImplTest {
     @DisplayName("Testing patients synchronization")
     public void testPatientsSynchronization() {
         List<ClientDto> clientData = List.of(
-                ClientDto.builder().guid(UUID.randomUUID()).build(),
-                ClientDto.builder().guid(UUID.randomUUID()).build(),
-                ClientDto.builder().guid(UUID.randomUUID()).build()
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f1").lastName("l1").build(),
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f2").lastName("l2").build(),
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f3").lastName("l3").build()
         );
 
-        when(patientRepository.existsByFirstNameAndLastName(any(), any()))
-                .thenReturn(true)
-                .thenReturn(true)
-                .thenReturn(false);
+        Map<FullNameDto, Long> patientIdsByFullName = Map.of(
+                new FullNameDto("f1", "l1"), 1L,
+                new FullNameDto("f2", "l2"), 2L
+        );
 
-        when(clientService.createNewClients(any()))
+        when(patientJdbcRepository.findPatientIdsByFullName())
+                .thenReturn(patientIdsByFullName);
+
+        when(clientService.createNewClients(any(), any()))
                 .thenReturn(2);
 
         // spy testing object to mock inner 'createNewPatients' method call
         PatientServiceImpl spy = spy(patientService);
         doReturn(1)
                 .when(spy)
-                .createNewPatients(any());
+                .createNewPatients(any(), any());
 
         spy.synchronizePatients(clientData);
 
+        verify(patientJdbcRepository, times(1)).findPatientIdsByFullName();
         verify(clientService, times(1))
-                .createNewClients(List.of(clientData.get(0), clientData.get(1)));
+                .createNewClients(List.of(clientData.get(0), clientData.get(1)), patientIdsByFullName);
         verify(spy, times(1))
-                .createNewPatients(List.of(clientData.get(2)));
+                .createNewPatients(List.of(clientData.get(2)), patientIdsByFullName);
         verify(statistics, times(1)).addNewClients(2);
         verify(statistics, times(1)).addNewPatients(1);
     }
@@ -97,7 +109,8 @@ public class PatientServiceImplTest {
         Assertions.assertEquals(uniquePatients, result);
 
         ArgumentCaptor<List<Patient>> captor = ArgumentCaptor.forClass(List.class);
-        verify(patientRepository, times(1)).saveAll(captor.capture());
+        verify(patientJdbcRepository, times(1)).insertPatients(captor.capture());
+        verify(patientRepository, never()).saveAll(any());
 
         captor.getAllValues().forEach(patients -> {
             Assertions.assertEquals(uniquePatients, patients.size());
@@ -128,18 +141,67 @@ public class PatientServiceImplTest {
     }
 
     @Test
-    @DisplayName("Trying to find existing patient by client GUID")
-    public void testFindPatientByClientGuidWithExistingPatient() {
-        when(patientRepository.findByClientGuid(any())).thenReturn(new Patient());
-        Patient patient = patientService.findPatientByClientGuid(UUID.randomUUID());
-        Assertions.assertNotNull(patient);
+    @DisplayName("Trying to create new patients. Created patients are added to shared index")
+    public void testCreateNewPatientsAddsPatientsToIndex() {
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder()
+                        .guid(UUID.randomUUID())
+                        .firstName("f1").lastName("l1")
+                        .status("ACTIVE")
+                        .build()
+        );
+
+        doAnswer(invocation -> {
+            List<Patient> patients = invocation.getArgument(0);
+            patients.forEach(patient -> patient.setId(7L));
+            return null;
+        }).when(patientJdbcRepository).insertPatients(any());
+
+        Map<FullNameDto, Long> patientIdsByFullName = new HashMap<>();
+        patientService.createNewPatients(clientData, patientIdsByFullName);
+
+        Assertions.assertEquals(Map.of(new FullNameDto("f1", "l1"), 7L), patientIdsByFullName);
     }
 
     @Test
-    @DisplayName("Trying find existing patient by client GUID")
-    public void testFindPatientByClientGuidWithNewPatient() {
-        when(patientRepository.findByClientGuid(any())).thenReturn(null);
-        Patient patient = patientService.findPatientByClientGuid(UUID.randomUUID());
-        Assertions.assertNull(patient);
+    @DisplayName("Trying to create new patients through jpa repository")
+    public void testCreateNewPatientsWithJpaWritePath() {
+        PatientServiceImpl jpaPatientService = new PatientServiceImpl(patientRepository, patientJdbcRepository,
+                clientService, statistics, "jpa");
+
+        List<ClientDto> clientData = List.of(
+                ClientDto.builder()
+                        .guid(UUID.randomUUID())
+                        .firstName("f1").lastName("l1")
+                        .status("ACTIVE")
+                        .build()
+        );
+
+        int result = jpaPatientService.createNewPatients(clientData);
+
+        Assertions.assertEquals(1, result);
+        verify(patientRepository, times(1)).saveAll(any());
+        verify(patientJdbcRepository, never()).insertPatients(any());
+    }
+
+    @Test
+    @DisplayName("Trying to resolve patient statuses of all clients")
+    public void testFindPatientStatusesByClientGuid() {
+        UUID clientGuid = UUID.randomUUID();
+        when(patientJdbcRepository.findPatientStatusesByClientGuid())
+                .thenReturn(Map.of(clientGuid, new PatientStatusDto(1L, Status.ACTIVE)));
+
+        Map<UUID, PatientStatusDto> patientStatuses = patientService.findPatientStatusesByClientGuid();
+
+        Assertions.assertEquals(new PatientStatusDto(1L, Status.ACTIVE), patientStatuses.get(clientGuid));
+    }
+
+    @Test
+    @DisplayName("Trying to get patient reference by id")
+    public void testGetPatientReference() {
+        Patient reference = Patient.builder().id(1L).build();
+        when(patientRepository.getReferenceById(1L)).thenReturn(reference);
+
+        Assertions.assertSame(reference, patientService.getPatientReference(1L));
     }
 }
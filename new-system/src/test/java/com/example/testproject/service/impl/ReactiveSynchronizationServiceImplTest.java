@@ -0,0 +1,126 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.CommentResponseDto;
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
+import com.example.testproject.entity.Note;
+import com.example.testproject.entity.Status;
+import com.example.testproject.exception.ConnectionException;
+import com.example.testproject.service.ClientService;
+import com.example.testproject.service.CommentSync;
+import com.example.testproject.service.NoteService;
+import com.example.testproject.service.PatientService;
+import com.example.testproject.service.UserService;
+import com.example.testproject.statistics.ConnectionPoolStatistics;
+import com.example.testproject.statistics.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestClientException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveSynchronizationServiceImplTest {
+    @Mock
+    private ClientService clientService;
+
+    @Mock
+    private PatientService patientService;
+
+    @Mock
+    private NoteService noteService;
+
+    @Mock
+    private CommentSync commentSync;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private Statistics statistics;
+
+    @Mock
+    private ConnectionPoolStatistics connectionPoolStatistics;
+
+    private ReactiveSynchronizationServiceImpl synchronizationService;
+
+    @BeforeEach
+    void setUp() {
+        int chunkSize = 2;
+        int concurrency = 2;
+        synchronizationService = new ReactiveSynchronizationServiceImpl(clientService, patientService, noteService,
+                userService, statistics, connectionPoolStatistics, chunkSize, concurrency, concurrency, concurrency);
+    }
+
+    @Test
+    @DisplayName("Trying to synchronize successfully. Clients go through all stages in chunks")
+    void testSynchronizationSuccess() throws Exception {
+        ClientDto active = ClientDto.builder().guid(UUID.randomUUID()).build();
+        ClientDto inactive = ClientDto.builder().guid(UUID.randomUUID()).build();
+        ClientDto another = ClientDto.builder().guid(UUID.randomUUID()).build();
+        Map<UUID, List<CommentResponseDto>> comments = Map.of(active.guid(), List.of());
+        List<Note> notes = List.of(new Note());
+
+        Map<FullNameDto, Long> patientIdsByFullName = Map.of(new FullNameDto("f1", "l1"), 1L);
+
+        when(noteService.startCommentSync(true)).thenReturn(commentSync);
+        when(patientService.findPatientIdsByFullName()).thenReturn(patientIdsByFullName);
+        doAnswer(invocation -> {
+            Consumer<ClientDto> consumer = invocation.getArgument(0);
+            List.of(active, inactive, another, active).forEach(consumer);
+            return null;
+        }).when(clientService).fetchValidClientData(any());
+        when(patientService.findPatientStatusesByClientGuids(List.of(active.guid(), inactive.guid())))
+                .thenReturn(Map.of(
+                        active.guid(), new PatientStatusDto(1L, Status.ACTIVE),
+                        inactive.guid(), new PatientStatusDto(2L, Status.INACTIVE)
+                ));
+        when(patientService.findPatientStatusesByClientGuids(List.of(another.guid())))
+                .thenReturn(Map.of(another.guid(), new PatientStatusDto(3L, Status.INACTIVE)));
+        when(commentSync.fetch(List.of(active)))
+                .thenReturn(CompletableFuture.completedFuture(comments));
+        when(noteService.findNewAndUpdatedNotes(eq(comments), any()))
+                .thenReturn(notes);
+
+        synchronizationService.synchronize();
+
+        verify(userService).preloadUsers();
+        // index is loaded once and shared by all chunks
+        verify(patientService, times(1)).findPatientIdsByFullName();
+        verify(patientService).synchronizePatients(List.of(active, inactive), patientIdsByFullName);
+        verify(patientService).synchronizePatients(List.of(another), patientIdsByFullName);
+        verify(patientService, never()).synchronizePatients(any());
+        verify(statistics, times(2)).addSkippedCommentFetches(1);
+        verify(commentSync, times(1)).fetch(any());
+        verify(noteService).saveNotes(notes);
+        verify(commentSync).complete();
+        verify(statistics).generateStatisticsMessage();
+    }
+
+    @Test
+    @DisplayName("Trying to synchronize. Network failure")
+    void testSynchronizationFailure() throws Exception {
+        when(noteService.startCommentSync(true)).thenReturn(commentSync);
+        doThrow(new ConnectionException("Test exception", new RestClientException("")))
+                .when(clientService).fetchValidClientData(any());
+
+        synchronizationService.synchronize();
+
+        verify(statistics).generateStatisticsMessage();
+        verify(patientService, never()).synchronizePatients(any(), any());
+        verify(commentSync, never()).fetch(any());
+        verify(noteService, never()).saveNotes(any());
+        verify(commentSync, never()).complete();
+    }
+}
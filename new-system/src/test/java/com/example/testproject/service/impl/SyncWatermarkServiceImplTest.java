@@ -0,0 +1,74 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.entity.SyncWatermark;
+import com.example.testproject.repository.SyncWatermarkJdbcRepository;
+import com.example.testproject.repository.SyncWatermarkRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SyncWatermarkServiceImplTest {
+    @Mock
+    private SyncWatermarkRepository syncWatermarkRepository;
+
+    @Mock
+    private SyncWatermarkJdbcRepository syncWatermarkJdbcRepository;
+
+    @InjectMocks
+    private SyncWatermarkServiceImpl syncWatermarkService;
+
+    @Test
+    @DisplayName("Trying to save first watermark")
+    public void testSaveWatermarkWithoutPrevious() {
+        LocalDateTime watermark = LocalDateTime.now();
+
+        when(syncWatermarkRepository.findById("name")).thenReturn(Optional.empty());
+
+        syncWatermarkService.saveWatermark("name", watermark);
+
+        ArgumentCaptor<SyncWatermark> captor = ArgumentCaptor.forClass(SyncWatermark.class);
+        verify(syncWatermarkRepository, times(1)).save(captor.capture());
+        Assertions.assertEquals("name", captor.getValue().getName());
+        Assertions.assertEquals(watermark, captor.getValue().getWatermark());
+    }
+
+    @Test
+    @DisplayName("Trying to move watermark backwards")
+    public void testSaveWatermarkOlderThanPrevious() {
+        LocalDateTime watermark = LocalDateTime.now();
+
+        when(syncWatermarkRepository.findById("name"))
+                .thenReturn(Optional.of(new SyncWatermark("name", watermark, watermark)));
+
+        syncWatermarkService.saveWatermark("name", watermark.minusMinutes(1));
+
+        verify(syncWatermarkRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Saving synced clients. Only added and removed clients are written")
+    public void testSaveSyncedClients() {
+        UUID keptClient = UUID.randomUUID();
+        UUID removedClient = UUID.randomUUID();
+        UUID addedClient = UUID.randomUUID();
+
+        syncWatermarkService.saveSyncedClients("name", Set.of(keptClient, removedClient), Set.of(keptClient, addedClient));
+
+        verify(syncWatermarkJdbcRepository, times(1)).deleteClientIds("name", Set.of(removedClient));
+        verify(syncWatermarkJdbcRepository, times(1)).insertClientIds("name", Set.of(addedClient));
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.testproject.service.impl;
+
+import com.example.testproject.dto.SynchronizationRunDto;
+import com.example.testproject.service.SynchronizationRun;
+import com.example.testproject.service.SynchronizationService;
+import com.example.testproject.statistics.RunStatistics;
+import com.example.testproject.statistics.Statistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SynchronizationCoordinatorImplTest {
+    @Mock
+    private SynchronizationService synchronizationService;
+
+    @Mock
+    private Statistics statistics;
+
+    private ThreadPoolTaskExecutor syncRunExecutor;
+
+    private SynchronizationCoordinatorImpl synchronizationCoordinator;
+
+    @BeforeEach
+    void setUp() {
+        int keptRuns = 2;
+        syncRunExecutor = new ThreadPoolTaskExecutor();
+        syncRunExecutor.setCorePoolSize(1);
+        syncRunExecutor.setMaxPoolSize(1);
+        syncRunExecutor.initialize();
+
+        synchronizationCoordinator = new SynchronizationCoordinatorImpl(synchronizationService, statistics, syncRunExecutor,
+                keptRuns);
+    }
+
+    @AfterEach
+    void tearDown() {
+        syncRunExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Requesting synchronization. Run has its own statistics")
+    public void testRequestSynchronization() {
+        when(statistics.startRun(any())).thenAnswer(invocation -> new RunStatistics(invocation.getArgument(0)));
+
+        SynchronizationRun run = synchronizationCoordinator.requestSynchronization();
+        run.getCompletion().join();
+
+        Assertions.assertEquals(SynchronizationRun.Status.FINISHED, run.getStatus());
+        Assertions.assertEquals(run.getId(), run.getStatistics().getRunId());
+        verify(statistics).startRun(run.getId());
+        verify(synchronizationService).synchronize();
+    }
+
+    @Test
+    @DisplayName("Requesting synchronization while one is running. Next triggers join one queued run")
+    public void testRequestSynchronizationWhileRunning() throws InterruptedException {
+        CountDownLatch firstRunStarted = new CountDownLatch(1);
+        CountDownLatch firstRunReleased = new CountDownLatch(1);
+        AtomicInteger activeRuns = new AtomicInteger();
+        AtomicInteger maxActiveRuns = new AtomicInteger();
+
+        when(statistics.startRun(any())).thenAnswer(invocation -> new RunStatistics(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            maxActiveRuns.accumulateAndGet(activeRuns.incrementAndGet(), Math::max);
+            firstRunStarted.countDown();
+            firstRunReleased.await();
+            activeRuns.decrementAndGet();
+            return null;
+        }).when(synchronizationService).synchronize();
+
+        SynchronizationRun activeRun = synchronizationCoordinator.requestSynchronization();
+        Assertions.assertTrue(firstRunStarted.await(5, TimeUnit.SECONDS));
+
+        SynchronizationRun queuedRun = synchronizationCoordinator.requestSynchronization();
+        SynchronizationRun joinedRun = synchronizationCoordinator.requestSynchronization();
+
+        Assertions.assertNotEquals(activeRun.getId(), queuedRun.getId());
+        Assertions.assertSame(queuedRun, joinedRun);
+        Assertions.assertEquals(SynchronizationRun.Status.RUNNING, activeRun.getStatus());
+        Assertions.assertEquals(SynchronizationRun.Status.QUEUED, queuedRun.getStatus());
+
+        firstRunReleased.countDown();
+        activeRun.getCompletion().join();
+        queuedRun.getCompletion().join();
+
+        Assertions.assertEquals(1, maxActiveRuns.get());
+        Assertions.assertNotSame(activeRun.getStatistics(), queuedRun.getStatistics());
+        verify(synchronizationService, times(2)).synchronize();
+    }
+
+    @Test
+    @DisplayName("Requesting synchronization. Run fails")
+    public void testRequestSynchronizationWithFailure() {
+        when(statistics.startRun(any())).thenAnswer(invocation -> new RunStatistics(invocation.getArgument(0)));
+        doThrow(new IllegalStateException("Test exception")).when(synchronizationService).synchronize();
+
+        SynchronizationRun run = synchronizationCoordinator.requestSynchronization();
+
+        Assertions.assertDoesNotThrow(() -> run.getCompletion().join());
+        Assertions.assertEquals(SynchronizationRun.Status.FAILED, run.getStatus());
+        Assertions.assertEquals("Test exception", run.toDto().error());
+    }
+
+    @Test
+    @DisplayName("Requesting synchronization. Run fails with error, next run is not blocked")
+    public void testRequestSynchronizationWithError() {
+        when(statistics.startRun(any())).thenAnswer(invocation -> new RunStatistics(invocation.getArgument(0)));
+        doThrow(new StackOverflowError("Test error")).doNothing().when(synchronizationService).synchronize();
+
+        SynchronizationRun failedRun = synchronizationCoordinator.requestSynchronization();
+        Assertions.assertDoesNotThrow(() -> failedRun.getCompletion().get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(SynchronizationRun.Status.FAILED, failedRun.getStatus());
+        Assertions.assertEquals("Test error", failedRun.toDto().error());
+
+        SynchronizationRun nextRun = synchronizationCoordinator.requestSynchronization();
+        Assertions.assertDoesNotThrow(() -> nextRun.getCompletion().get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(SynchronizationRun.Status.FINISHED, nextRun.getStatus());
+    }
+
+    @Test
+    @DisplayName("Requesting synchronization. Engine failure is reported by run status")
+    public void testRequestSynchronizationWithEngineFailure() {
+        Statistics runStatistics = new Statistics(new SimpleMeterRegistry());
+        synchronizationCoordinator = new SynchronizationCoordinatorImpl(synchronizationService, runStatistics,
+                syncRunExecutor, 2);
+
+        // engines log failures and record them on the run instead of rethrowing
+        doAnswer(invocation -> {
+            runStatistics.recordRunFailure(new IllegalStateException("Engine failure"));
+            return null;
+        }).when(synchronizationService).synchronize();
+
+        SynchronizationRun run = synchronizationCoordinator.requestSynchronization();
+        run.getCompletion().join();
+
+        Assertions.assertEquals(SynchronizationRun.Status.FAILED, run.getStatus());
+        Assertions.assertEquals("Engine failure", run.toDto().error());
+    }
+
+    @Test
+    @DisplayName("Getting progress of a running synchronization")
+    public void testRunProgress() throws InterruptedException {
+        Statistics runStatistics = new Statistics(new SimpleMeterRegistry());
+        synchronizationCoordinator = new SynchronizationCoordinatorImpl(synchronizationService, runStatistics,
+                syncRunExecutor, 2);
+
+        CountDownLatch progressReported = new CountDownLatch(1);
+        CountDownLatch progressChecked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            runStatistics.startPhase(Statistics.Phase.NOTES);
+            runStatistics.setTotalClients(4);
+            runStatistics.addProcessedClients(2);
+            runStatistics.addFetchedComments(10);
+            progressReported.countDown();
+            progressChecked.await();
+            runStatistics.finishPhase();
+            return null;
+        }).when(synchronizationService).synchronize();
+
+        SynchronizationRun run = synchronizationCoordinator.requestSynchronization();
+        Assertions.assertTrue(progressReported.await(5, TimeUnit.SECONDS));
+
+        SynchronizationRunDto progress = synchronizationCoordinator.findRun(run.getId()).orElseThrow().toDto();
+        progressChecked.countDown();
+
+        Assertions.assertEquals("RUNNING", progress.status());
+        Assertions.assertEquals("NOTES", progress.phase());
+        Assertions.assertEquals(4, progress.totalClients());
+        Assertions.assertEquals(2, progress.processedClients());
+        Assertions.assertNotNull(progress.etaSeconds());
+
+        run.getCompletion().join();
+        SynchronizationRunDto result = run.toDto();
+        Assertions.assertEquals("FINISHED", result.status());
+        Assertions.assertNull(result.phase());
+        Assertions.assertNull(result.etaSeconds());
+    }
+
+    @Test
+    @DisplayName("Finding synchronization runs. Only recent runs are kept")
+    public void testFindRunKeepsRecentRuns() {
+        when(statistics.startRun(any())).thenAnswer(invocation -> new RunStatistics(invocation.getArgument(0)));
+
+        List<SynchronizationRun> runs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SynchronizationRun run = synchronizationCoordinator.requestSynchronization();
+            run.getCompletion().join();
+            runs.add(run);
+        }
+
+        Assertions.assertTrue(synchronizationCoordinator.findRun(runs.get(0).getId()).isEmpty());
+        Assertions.assertSame(runs.get(1), synchronizationCoordinator.findRun(runs.get(1).getId()).orElseThrow());
+        Assertions.assertSame(runs.get(2), synchronizationCoordinator.findRun(runs.get(2).getId()).orElseThrow());
+    }
+}
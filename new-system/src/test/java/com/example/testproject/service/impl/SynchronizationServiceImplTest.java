@@ -1,22 +1,33 @@
 package com.example.testproject.service.impl;
 
 import com.example.testproject.dto.ClientDto;
+import com.example.testproject.dto.FullNameDto;
+import com.example.testproject.dto.PatientStatusDto;
+import com.example.testproject.entity.Status;
 import com.example.testproject.exception.ConnectionException;
 import com.example.testproject.service.ClientService;
+import com.example.testproject.service.CommentSync;
 import com.example.testproject.service.NoteService;
 import com.example.testproject.service.PatientService;
+import com.example.testproject.service.UserService;
+import com.example.testproject.statistics.ConnectionPoolStatistics;
 import com.example.testproject.statistics.Statistics;
+import com.example.testproject.statistics.Statistics.Phase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestClientException;
 
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,12 +41,50 @@ public class SynchronizationServiceImplTest {
     @Mock
     private NoteService noteService;
 
+    @Mock
+    private CommentSync commentSync;
+
+    @Mock
+    private UserService userService;
+
     @Mock
     private Statistics statistics;
 
-    @InjectMocks
+    @Mock
+    private ConnectionPoolStatistics connectionPoolStatistics;
+
+    private ThreadPoolTaskExecutor patientSyncExecutor;
+
+    private ThreadPoolTaskExecutor noteSyncExecutor;
+
     private SynchronizationServiceImpl synchronizationService;
 
+    @BeforeEach
+    void setUp() {
+        patientSyncExecutor = new ThreadPoolTaskExecutor();
+        patientSyncExecutor.setCorePoolSize(2);
+        patientSyncExecutor.initialize();
+        noteSyncExecutor = new ThreadPoolTaskExecutor();
+        noteSyncExecutor.setCorePoolSize(2);
+        noteSyncExecutor.initialize();
+
+        synchronizationService = createSynchronizationService(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        patientSyncExecutor.shutdown();
+        noteSyncExecutor.shutdown();
+    }
+
+    private SynchronizationServiceImpl createSynchronizationService(boolean pipelinedPhases) {
+        int patientPartitions = 2;
+        int chunkSize = 2;
+        return new SynchronizationServiceImpl(clientService, patientService, noteService, userService, statistics,
+                connectionPoolStatistics, patientSyncExecutor, noteSyncExecutor, pipelinedPhases, patientPartitions,
+                chunkSize);
+    }
+
     @Test
     @DisplayName("Trying to synchronize successfully")
     void testSynchronizationSuccess() throws Exception {
@@ -51,12 +100,19 @@ public class SynchronizationServiceImplTest {
 
         synchronizationService.synchronize();
 
-        verify(statistics).reset();
         verify(clientService).fetchClientData();
         verify(clientService).filterInvalidClientData(clients);
         verify(patientService).synchronizePatients(clients);
+        verify(userService).preloadUsers();
         verify(noteService).synchronizeNotesConcurrently(clients);
+        for (Phase phase : List.of(Phase.CLIENTS, Phase.PATIENTS, Phase.USERS, Phase.NOTES)) {
+            verify(statistics).startPhase(phase);
+        }
+        verify(statistics).setTotalClients(clients.size());
+        verify(statistics).finishPhase();
+        verify(statistics, never()).recordRunFailure(any());
         verify(statistics).generateStatisticsMessage();
+        verify(connectionPoolStatistics).generateStatisticsMessage();
     }
 
     @Test
@@ -68,11 +124,81 @@ public class SynchronizationServiceImplTest {
 
         synchronizationService.synchronize();
 
-        verify(statistics).reset();
         verify(clientService).fetchClientData();
         verify(statistics).generateStatisticsMessage();
+        verify(connectionPoolStatistics).generateStatisticsMessage();
         verify(clientService, never()).filterInvalidClientData(any());
+        verify(statistics, never()).finishPhase();
+        verify(statistics).recordRunFailure(any());
         verify(patientService, never()).synchronizePatients(any());
         verify(noteService, never()).synchronizeNotesConcurrently(any());
     }
+
+    @Test
+    @DisplayName("Trying to synchronize with pipelined phases. Notes of every resolved chunk are synchronized")
+    void testPipelinedSynchronization() throws Exception {
+        synchronizationService = createSynchronizationService(true);
+
+        List<ClientDto> clients = new ArrayList<>(List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f1").lastName("l1").build(),
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f1").lastName("l1").build(),
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f2").lastName("l2").build(),
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f3").lastName("l3").build(),
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f4").lastName("l4").build()
+        ));
+
+        when(clientService.fetchClientData()).thenReturn(clients);
+        when(noteService.startCommentSync(false)).thenReturn(commentSync);
+        when(patientService.findPatientIdsByFullName()).thenReturn(Map.of());
+        when(patientService.findPatientStatusesByClientGuids(any())).thenAnswer(invocation -> {
+            Map<UUID, PatientStatusDto> statuses = new HashMap<>();
+            Collection<UUID> clientGuids = invocation.getArgument(0);
+            clientGuids.forEach(guid -> statuses.put(guid, new PatientStatusDto(1L, Status.ACTIVE)));
+            return statuses;
+        });
+
+        synchronizationService.synchronize();
+
+        verify(userService).preloadUsers();
+        verify(patientService, never()).synchronizePatients(any());
+        verify(noteService, never()).synchronizeNotesConcurrently(any());
+
+        // clients of one person are always resolved in the same partition
+        ArgumentCaptor<List<ClientDto>> patientCaptor = ArgumentCaptor.forClass(List.class);
+        verify(patientService, atLeastOnce()).synchronizePatients(patientCaptor.capture(), any());
+        Map<FullNameDto, Integer> chunksByFullName = new HashMap<>();
+        patientCaptor.getAllValues().forEach(chunk -> chunk.stream()
+                .map(client -> new FullNameDto(client.firstName(), client.lastName()))
+                .distinct()
+                .forEach(fullName -> chunksByFullName.merge(fullName, 1, Integer::sum)));
+        chunksByFullName.values().forEach(count -> Assertions.assertTrue(count <= 2));
+
+        ArgumentCaptor<List<ClientDto>> noteCaptor = ArgumentCaptor.forClass(List.class);
+        verify(noteService, times(patientCaptor.getAllValues().size()))
+                .synchronizeNotes(noteCaptor.capture(), any(), eq(commentSync));
+        Assertions.assertEquals(clients.size(), noteCaptor.getAllValues().stream().mapToInt(List::size).sum());
+        // watermark moves only after notes of every chunk are written
+        verify(commentSync).complete();
+    }
+
+    @Test
+    @DisplayName("Trying to synchronize with pipelined phases. Note synchronization failure keeps the watermark")
+    void testPipelinedSynchronizationWithNoteFailure() throws Exception {
+        synchronizationService = createSynchronizationService(true);
+
+        List<ClientDto> clients = List.of(
+                ClientDto.builder().guid(UUID.randomUUID()).firstName("f1").lastName("l1").build());
+
+        when(clientService.fetchClientData()).thenReturn(new ArrayList<>(clients));
+        when(noteService.startCommentSync(false)).thenReturn(commentSync);
+        when(patientService.findPatientIdsByFullName()).thenReturn(Map.of());
+        when(patientService.findPatientStatusesByClientGuids(any())).thenReturn(Map.of());
+        doThrow(new IllegalStateException("Test exception"))
+                .when(noteService).synchronizeNotes(any(), any(), eq(commentSync));
+
+        synchronizationService.synchronize();
+
+        verify(statistics).recordRunFailure(any());
+        verify(commentSync, never()).complete();
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.testproject.service.impl;
 
 import com.example.testproject.entity.User;
+import com.example.testproject.repository.UserJdbcRepository;
 import com.example.testproject.repository.UserRepository;
 import com.example.testproject.statistics.Statistics;
 import org.junit.jupiter.api.Assertions;
@@ -11,6 +12,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -18,6 +23,9 @@ public class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserJdbcRepository userJdbcRepository;
+
     @Mock
     private Statistics statistics;
 
@@ -27,15 +35,15 @@ public class UserServiceImplTest {
     @Test
     @DisplayName("Trying to create user with existing user login")
     public void testCreateUserIfNotExistsWithExistingLogin() {
-        User existingUser = new User();
-        existingUser.setLogin("login");
+        User existingUser = buildUser(1L, "login");
 
-        when(userRepository.createByLoginIfNotExists(existingUser.getLogin())).thenReturn(0);
-        when(userRepository.findByLogin(existingUser.getLogin())).thenReturn(existingUser);
+        when(userRepository.findAll()).thenReturn(List.of(existingUser));
 
+        userService.preloadUsers();
         User returnedUser = userService.createUserIfNotExists(existingUser.getLogin());
 
-        verify(statistics, times(0)).addNewUsers(1);
+        verify(userJdbcRepository, never()).createUsersIfNotExist(any());
+        verify(statistics, never()).addNewUsers(anyInt());
         Assertions.assertEquals(returnedUser.getLogin(), existingUser.getLogin());
     }
 
@@ -44,15 +52,44 @@ public class UserServiceImplTest {
     public void testCreateUserIfNotExistsWithNewLogin() {
         final String newLogin = "login";
 
-        User newUser = new User();
-        newUser.setLogin(newLogin);
+        User newUser = buildUser(1L, newLogin);
 
-        when(userRepository.createByLoginIfNotExists(newLogin)).thenReturn(1);
-        when(userRepository.findByLogin(any())).thenReturn(newUser);
+        when(userJdbcRepository.createUsersIfNotExist(Set.of(newLogin))).thenReturn(List.of(newUser));
 
         User returnedUser = userService.createUserIfNotExists(newLogin);
 
         verify(statistics, times(1)).addNewUsers(1);
+        verify(userRepository, never()).findByLoginIn(any());
         Assertions.assertEquals(returnedUser.getLogin(), newLogin);
+
+        // created user is cached
+        userService.createUserIfNotExists(newLogin);
+
+        verify(userJdbcRepository, times(1)).createUsersIfNotExist(any());
+    }
+
+    @Test
+    @DisplayName("Trying to create several users. One is cached, one is new, one was created concurrently")
+    public void testCreateUsersIfNotExist() {
+        User cachedUser = buildUser(1L, "cached");
+        User newUser = buildUser(2L, "new");
+        User concurrentUser = buildUser(3L, "concurrent");
+
+        when(userRepository.findAll()).thenReturn(List.of(cachedUser));
+        when(userJdbcRepository.createUsersIfNotExist(Set.of("new", "concurrent"))).thenReturn(List.of(newUser));
+        when(userRepository.findByLoginIn(Set.of("concurrent"))).thenReturn(List.of(concurrentUser));
+
+        userService.preloadUsers();
+        Map<String, User> users = userService.createUsersIfNotExist(List.of("cached", "new", "concurrent"));
+
+        verify(statistics, times(1)).addNewUsers(1);
+        Assertions.assertEquals(Map.of("cached", cachedUser, "new", newUser, "concurrent", concurrentUser), users);
+    }
+
+    private static User buildUser(Long id, String login) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin(login);
+        return user;
     }
 }
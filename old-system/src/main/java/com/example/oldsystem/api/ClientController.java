@@ -1,40 +1,118 @@
 package com.example.oldsystem.api;
 
 import com.example.oldsystem.dto.ClientDto;
+import com.example.oldsystem.dto.ClientPageDto;
+import com.example.oldsystem.entity.old.Client;
+import com.example.oldsystem.repository.old.ClientJdbcRepository;
 import com.example.oldsystem.repository.old.ClientRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/clients")
 public class ClientController {
+    private static final int MAX_PAGE_SIZE = 10_000;
+    private static final int STREAM_FLUSH_EVERY = 500;
+
+    private final int STREAM_FETCH_SIZE;
+
     private final ClientRepository clientRepository;
+    private final ClientJdbcRepository clientJdbcRepository;
+    private final ObjectMapper objectMapper;
 
-    public ClientController(ClientRepository clientRepository) {
+    public ClientController(ClientRepository clientRepository,
+                            ClientJdbcRepository clientJdbcRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${CLIENT_STREAM_FETCH_SIZE:1000}") int streamFetchSize) {
         this.clientRepository = clientRepository;
+        this.clientJdbcRepository = clientJdbcRepository;
+        this.objectMapper = objectMapper;
+        STREAM_FETCH_SIZE = streamFetchSize;
     }
 
     @PostMapping // why not get ? because post is in the task description
     public ResponseEntity<List<ClientDto>> getClients() {
         //without service usage for simplicity
         List<ClientDto> responseDto = clientRepository.findAll().stream()
-                .map(client -> ClientDto.builder()
-                        .guid(client.getId().toString())
-                        .agency(client.getAgency().getName())
-                        .firstName(client.getFirstName())
-                        .lastName(client.getLastName())
-                        .status(client.getStatus())
-                        .dob(client.getBirthDate().toString())
-                        .createdDateTime(client.getCreatedAt().toString())
-                        .build()
-                ).toList();
+                .map(ClientController::toDto)
+                .toList();
 
         // 404 not_found is absent because logic is like get all items (empty list as the result is possible)
 
         return ResponseEntity.ok(responseDto);
     }
+
+    // keyset pagination: next page starts right after the last returned client id
+    @PostMapping("/page")
+    public ResponseEntity<ClientPageDto> getClientPage(@RequestParam(required = false) UUID after,
+                                                       @RequestParam(defaultValue = "1000") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Client> clients = after == null
+                ? clientRepository.findAllByOrderByIdAsc(Limit.of(limit))
+                : clientRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+
+        UUID nextAfter = clients.size() < limit ? null : clients.get(clients.size() - 1).getId();
+
+        return ResponseEntity.ok(ClientPageDto.builder()
+                .clients(clients.stream().map(ClientController::toDto).toList())
+                .nextAfter(nextAfter)
+                .build());
+    }
+
+    // one json object per line, rows are written while the cursor is read, nothing is collected in memory
+    @PostMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamClients() {
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.createGenerator(outputStream);
+            int[] written = {0};
+
+            clientJdbcRepository.streamAll(STREAM_FETCH_SIZE, client -> {
+                try {
+                    generator.writeObject(client);
+                    generator.writeRaw('\n');
+                    // first row is flushed at once so the consumer can start immediately
+                    if (written[0]++ % STREAM_FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            generator.close();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static ClientDto toDto(Client client) {
+        return ClientDto.builder()
+                .guid(client.getId().toString())
+                .agency(client.getAgency().getName())
+                .firstName(client.getFirstName())
+                .lastName(client.getLastName())
+                .status(client.getStatus())
+                .dob(client.getBirthDate().toString())
+                .createdDateTime(client.getCreatedAt().toString())
+                .build();
+    }
 }
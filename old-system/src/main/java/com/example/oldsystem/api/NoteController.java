@@ -1,7 +1,12 @@
 package com.example.oldsystem.api;
 
+import com.example.oldsystem.dto.ClientCommentsDto;
+import com.example.oldsystem.dto.CommentBatchRequestDto;
+import com.example.oldsystem.dto.CommentChangesDto;
+import com.example.oldsystem.dto.CommentChangesRequestDto;
 import com.example.oldsystem.dto.CommentRequestDto;
 import com.example.oldsystem.dto.CommentResponseDto;
+import com.example.oldsystem.repository.old.CommentJdbcRepository;
 import com.example.oldsystem.repository.old.CommentRepository;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -11,14 +16,24 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping(value = {"/api/v1/notes", "/api/v1/comments"})
 public class NoteController {
+    private static final int MAX_BATCH_CLIENTS = 1000;
+    private static final int MAX_CHANGES_PAGE_SIZE = 10_000;
+    private static final int DEFAULT_CHANGES_PAGE_SIZE = 1000;
+
     private final CommentRepository commentRepository;
+    private final CommentJdbcRepository commentJdbcRepository;
 
-    public NoteController(CommentRepository commentRepository) {
+    public NoteController(CommentRepository commentRepository,
+                          CommentJdbcRepository commentJdbcRepository) {
         this.commentRepository = commentRepository;
+        this.commentJdbcRepository = commentJdbcRepository;
     }
 
     @PostMapping // why not get ? because post is in the task description
@@ -43,4 +58,62 @@ public class NoteController {
 
         return ResponseEntity.ok(responseDto);
     }
+
+    // comments of many clients with one query, clients without comments are absent in the result
+    @PostMapping("/batch")
+    public ResponseEntity<List<ClientCommentsDto>> getClientCommentsBatch(@RequestBody CommentBatchRequestDto requestDto) {
+        List<UUID> clientGuids = requestDto.getClientGuids();
+        if (clientGuids == null || clientGuids.size() > MAX_BATCH_CLIENTS
+                || requestDto.getDateFrom() == null || requestDto.getDateTo() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (clientGuids.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+
+        Map<UUID, List<CommentResponseDto>> commentsByClient = commentJdbcRepository.findByClientsAndCreatedAtBetween(
+                        clientGuids, requestDto.getAgency(),
+                        requestDto.getDateFrom().atStartOfDay(),
+                        requestDto.getDateTo().atTime(23, 59, 59)
+                ).stream()
+                .collect(Collectors.groupingBy(CommentResponseDto::clientGuid));
+
+        List<ClientCommentsDto> responseDto = commentsByClient.entrySet().stream()
+                .map(entry -> ClientCommentsDto.builder()
+                        .clientGuid(entry.getKey())
+                        .comments(entry.getValue())
+                        .build())
+                .toList();
+
+        return ResponseEntity.ok(responseDto);
+    }
+
+    // comments created or modified after the cursor, paginated by (change time, id)
+    @PostMapping("/changes")
+    public ResponseEntity<CommentChangesDto> getCommentChanges(@RequestBody CommentChangesRequestDto requestDto) {
+        int limit = requestDto.getLimit() == null ? DEFAULT_CHANGES_PAGE_SIZE : requestDto.getLimit();
+        if (limit < 1 || limit > MAX_CHANGES_PAGE_SIZE || requestDto.getDateFrom() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<CommentResponseDto> comments = commentJdbcRepository.findChangedAfter(
+                requestDto.getSince(), requestDto.getAfterId(),
+                requestDto.getDateFrom().atStartOfDay(), limit
+        );
+
+        CommentResponseDto last = comments.isEmpty() ? null : comments.get(comments.size() - 1);
+
+        return ResponseEntity.ok(CommentChangesDto.builder()
+                .comments(comments)
+                .lastChangedAt(last == null ? null : changedAt(last))
+                .lastId(last == null ? null : last.guid())
+                .hasMore(comments.size() == limit)
+                .build());
+    }
+
+    private static LocalDateTime changedAt(CommentResponseDto comment) {
+        return comment.modifiedDateTime() != null && comment.modifiedDateTime().isAfter(comment.createdDateTime())
+                ? comment.modifiedDateTime()
+                : comment.createdDateTime();
+    }
 }
@@ -0,0 +1,10 @@
+package com.example.oldsystem.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+public record ClientCommentsDto(UUID clientGuid, List<CommentResponseDto> comments) {
+}
@@ -0,0 +1,13 @@
+package com.example.oldsystem.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+public record ClientPageDto(
+        List<ClientDto> clients,
+        UUID nextAfter // null when the last page is reached
+) {
+}
@@ -0,0 +1,21 @@
+package com.example.oldsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+public class CommentBatchRequestDto {
+    private String agency; // optional, when set only comments of clients of this agency are returned
+    private LocalDate dateFrom;
+    private LocalDate dateTo;
+    private List<UUID> clientGuids;
+}
@@ -0,0 +1,21 @@
+package com.example.oldsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+public class CommentChangesRequestDto {
+    private LocalDateTime since; // null means from the beginning
+    private UUID afterId; // together with 'since' forms the page cursor
+    private LocalDate dateFrom;
+    private Integer limit;
+}
@@ -15,7 +15,8 @@ import java.util.UUID;
 @AllArgsConstructor
 public class Note {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_note_id_seq")
+    @SequenceGenerator(name = "patient_note_id_seq", sequenceName = "patient_note_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "NOTE", length = 4000)
@@ -0,0 +1,49 @@
+package com.example.oldsystem.repository.old;
+
+import com.example.oldsystem.dto.ClientDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.function.Consumer;
+
+@Repository
+public class ClientJdbcRepository {
+    private static final String SELECT_ALL_ORDERED = """
+            SELECT c.id, a.name AS agency, c.first_name, c.last_name, c.status, c.birth_date, c.created_at
+            FROM old_client c
+            JOIN agency a ON a.id = c.agency_id
+            ORDER BY c.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ClientJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // postgres driver uses server side cursor only inside transaction (autocommit off),
+    // otherwise the whole result set is loaded regardless of fetch size
+    @Transactional(readOnly = true)
+    public void streamAll(int fetchSize, Consumer<ClientDto> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_ALL_ORDERED, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+            );
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (ResultSet rs) -> {
+            consumer.accept(ClientDto.builder()
+                    .guid(rs.getString("id"))
+                    .agency(rs.getString("agency"))
+                    .firstName(rs.getString("first_name"))
+                    .lastName(rs.getString("last_name"))
+                    .status(rs.getString("status"))
+                    .dob(rs.getTimestamp("birth_date").toLocalDateTime().toLocalDate().toString())
+                    .createdDateTime(rs.getTimestamp("created_at").toLocalDateTime().toString())
+                    .build());
+        });
+    }
+}
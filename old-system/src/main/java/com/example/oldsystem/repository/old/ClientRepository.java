@@ -1,9 +1,17 @@
 package com.example.oldsystem.repository.old;
 
 import com.example.oldsystem.entity.old.Client;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.ListCrudRepository;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface ClientRepository extends ListCrudRepository<Client, UUID> {
+    @EntityGraph(attributePaths = "agency")
+    List<Client> findAllByOrderByIdAsc(Limit limit);
+
+    @EntityGraph(attributePaths = "agency")
+    List<Client> findByIdGreaterThanOrderByIdAsc(UUID after, Limit limit);
 }
@@ -0,0 +1,93 @@
+package com.example.oldsystem.repository.old;
+
+import com.example.oldsystem.dto.CommentResponseDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public class CommentJdbcRepository {
+    private static final String SELECT_BY_CLIENTS = """
+            SELECT c.id, c.comment, c.created_at, c.modified_at, c.logged_user, c.client_id
+            FROM comment c
+            JOIN old_client oc ON oc.id = c.client_id
+            JOIN agency a ON a.id = oc.agency_id
+            WHERE c.client_id = ANY(?) AND c.created_at BETWEEN ? AND ?
+            """;
+    private static final String AGENCY_CONDITION = " AND a.name = ?";
+
+    // change time expression must match 'comment_changed_at_idx' index
+    private static final String SELECT_CHANGED = """
+            SELECT c.id, c.comment, c.created_at, c.modified_at, c.logged_user, c.client_id
+            FROM comment c
+            WHERE c.created_at >= ?
+            """;
+    private static final String CHANGED_AFTER_CONDITION = " AND (GREATEST(c.created_at, c.modified_at), c.id) > (?, ?)";
+    private static final String CHANGED_ORDER = " ORDER BY GREATEST(c.created_at, c.modified_at), c.id LIMIT ?";
+
+    private static final UUID MIN_UUID = new UUID(0, 0);
+
+    private static final RowMapper<CommentResponseDto> COMMENT_MAPPER = (rs, rowNum) -> {
+        Timestamp modifiedAt = rs.getTimestamp("modified_at");
+        return CommentResponseDto.builder()
+                .comments(rs.getString("comment"))
+                .guid(rs.getObject("id", UUID.class))
+                .modifiedDateTime(modifiedAt == null ? null : modifiedAt.toLocalDateTime())
+                .clientGuid(rs.getObject("client_id", UUID.class))
+                .datetime(LocalDateTime.now()) // not used, padding
+                .loggedUser(rs.getString("logged_user"))
+                .createdDateTime(rs.getTimestamp("created_at").toLocalDateTime())
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CommentJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<CommentResponseDto> findByClientsAndCreatedAtBetween(Collection<UUID> clientIds, String agency,
+                                                                    LocalDateTime from, LocalDateTime to) {
+        String sql = agency == null ? SELECT_BY_CLIENTS : SELECT_BY_CLIENTS + AGENCY_CONDITION;
+
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            Array ids = connection.createArrayOf("uuid", clientIds.toArray());
+            statement.setArray(1, ids);
+            statement.setTimestamp(2, Timestamp.valueOf(from));
+            statement.setTimestamp(3, Timestamp.valueOf(to));
+            if (agency != null) {
+                statement.setString(4, agency);
+            }
+            return statement;
+        }, COMMENT_MAPPER);
+    }
+
+    // ordered by (change time, id), where change time is the latest of creation and modification times
+    public List<CommentResponseDto> findChangedAfter(LocalDateTime since, UUID afterId,
+                                                     LocalDateTime createdFrom, int limit) {
+        String sql = since == null
+                ? SELECT_CHANGED + CHANGED_ORDER
+                : SELECT_CHANGED + CHANGED_AFTER_CONDITION + CHANGED_ORDER;
+
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            int index = 1;
+            statement.setTimestamp(index++, Timestamp.valueOf(createdFrom));
+            if (since != null) {
+                statement.setTimestamp(index++, Timestamp.valueOf(since));
+                statement.setObject(index++, afterId == null ? MIN_UUID : afterId);
+            }
+            statement.setInt(index, limit);
+            return statement;
+        }, COMMENT_MAPPER);
+    }
+}
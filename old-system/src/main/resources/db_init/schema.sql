@@ -1,7 +1,7 @@
 ------------------------------------- TABLES FOR NEW SYSTEM DATA -------------------------------------
 
 CREATE TABLE IF NOT EXISTS company_user (
-    id int8 NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    id int8 NOT NULL GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50),
     login varchar(255) NOT NULL,
 
     CONSTRAINT company_user_pkey PRIMARY KEY (id),
@@ -9,7 +9,7 @@ CREATE TABLE IF NOT EXISTS company_user (
 );
 
 CREATE TABLE IF NOT EXISTS patient_profile (
-     id int8 NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+     id int8 NOT NULL GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50),
      first_name varchar(255) NULL,
      last_name varchar(255) NULL,
      status_id int2 NOT NULL,
@@ -18,7 +18,7 @@ CREATE TABLE IF NOT EXISTS patient_profile (
 );
 
 CREATE TABLE IF NOT EXISTS patient_note (
-    id int8 NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    id int8 NOT NULL GENERATED BY DEFAULT AS IDENTITY (INCREMENT BY 50),
     created_date_time timestamp NOT NULL,
     last_modified_date_time timestamp NULL,
     note varchar(4000) NULL,
@@ -26,6 +26,7 @@ CREATE TABLE IF NOT EXISTS patient_note (
     last_modified_by_user_id int8 NULL,
     comment_id uuid NULL,
     patient_id int8 NOT NULL,
+    fingerprint varchar(64) NULL,
 
     CONSTRAINT patient_note_pkey PRIMARY KEY (id),
     CONSTRAINT fk_pat_note_to_modifyed_user FOREIGN KEY (last_modified_by_user_id) REFERENCES company_user(id),
@@ -33,6 +34,18 @@ CREATE TABLE IF NOT EXISTS patient_note (
     CONSTRAINT fk_pat_note_to_patient FOREIGN KEY (patient_id) REFERENCES patient_profile(id)
 );
 
+ALTER TABLE patient_note ADD COLUMN IF NOT EXISTS fingerprint varchar(64) NULL;
+
+-- sequence ids are taken in blocks of 50 starting at each sequence value: hibernate pooled-lo optimizer
+-- does it for entities, which keeps their jdbc insert batching enabled (identity ids would disable it),
+-- and new-system jdbc inserts take ids the same way instead of spending a whole increment per row.
+-- allocation size of entities must match this increment
+ALTER TABLE company_user ALTER COLUMN id SET INCREMENT BY 50;
+ALTER TABLE patient_profile ALTER COLUMN id SET INCREMENT BY 50;
+ALTER TABLE patient_note ALTER COLUMN id SET INCREMENT BY 50;
+
+CREATE UNIQUE INDEX IF NOT EXISTS patient_note_uniq_comment_id ON patient_note (comment_id);
+
 CREATE TABLE IF NOT EXISTS old_client_mapping (
     id uuid NOT NULL,
     patient_id int8 NOT NULL,
@@ -41,10 +54,28 @@ CREATE TABLE IF NOT EXISTS old_client_mapping (
     CONSTRAINT fk_old_client_to_patient FOREIGN KEY (patient_id) REFERENCES patient_profile(id)
 );
 
+CREATE TABLE IF NOT EXISTS sync_watermark (
+    name varchar(64) NOT NULL,
+    watermark timestamp NOT NULL,
+    updated_at timestamp NOT NULL,
+
+    CONSTRAINT sync_watermark_pkey PRIMARY KEY (name)
+);
+
+-- clients whose comments are synchronized up to the watermark of the same name
+CREATE TABLE IF NOT EXISTS sync_watermark_client (
+    name varchar(64) NOT NULL,
+    client_id uuid NOT NULL,
+
+    CONSTRAINT sync_watermark_client_pkey PRIMARY KEY (name, client_id)
+);
+
 TRUNCATE TABLE company_user CASCADE;
 TRUNCATE TABLE patient_profile CASCADE;
 TRUNCATE TABLE patient_note CASCADE;
 TRUNCATE TABLE old_client_mapping CASCADE;
+TRUNCATE TABLE sync_watermark;
+TRUNCATE TABLE sync_watermark_client;
 
 
 ------------------------------------- TABLES FOR OLD SYSTEM DATA -------------------------------------
@@ -82,6 +113,9 @@ CREATE TABLE IF NOT EXISTS comment (
     CONSTRAINT fk_comment_to_old_client FOREIGN KEY (client_id) REFERENCES old_client(id)
 );
 
+CREATE INDEX IF NOT EXISTS comment_client_id_idx ON comment (client_id);
+CREATE INDEX IF NOT EXISTS comment_changed_at_idx ON comment (GREATEST(created_at, modified_at), id);
+
 TRUNCATE TABLE agency CASCADE;
 TRUNCATE TABLE old_client CASCADE;
 TRUNCATE TABLE comment CASCADE;
\ No newline at end of file
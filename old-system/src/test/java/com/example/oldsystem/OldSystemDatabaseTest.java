@@ -0,0 +1,70 @@
+package com.example.oldsystem;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// one embedded postgres for the whole test jvm, schema is applied on context start like with 'with_init' profile
+public abstract class OldSystemDatabaseTest {
+    private static final EmbeddedPostgres POSTGRES = startPostgres();
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void databaseProperties(DynamicPropertyRegistry registry) {
+        registry.add("SPRING_DATASOURCE_URL", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("SPRING_DATASOURCE_USERNAME", () -> "postgres");
+        registry.add("SPRING_DATASOURCE_PASSWORD", () -> "postgres");
+        registry.add("spring.sql.init.mode", () -> "always");
+        registry.add("spring.sql.init.schema-locations", () -> "classpath:db_init/schema.sql");
+    }
+
+    // context and its database are shared between test classes, so every test starts from empty tables
+    @BeforeEach
+    void clearOldSystemTables() {
+        jdbcTemplate.execute("TRUNCATE TABLE agency, old_client, comment CASCADE");
+    }
+
+    protected long insertAgency(String name) {
+        return jdbcTemplate.queryForObject("INSERT INTO agency (name) VALUES (?) RETURNING id", Long.class, name);
+    }
+
+    protected UUID insertClient(UUID id, long agencyId) {
+        jdbcTemplate.update("""
+                        INSERT INTO old_client (id, first_name, last_name, status, birth_date, created_at, agency_id)
+                        VALUES (?, ?, ?, 'ACTIVE', ?, ?, ?)
+                        """,
+                id, "first " + id, "last " + id, Timestamp.valueOf(LocalDate.of(1980, 1, 1).atStartOfDay()),
+                Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 0, 0)), agencyId);
+        return id;
+    }
+
+    protected UUID insertComment(UUID id, UUID clientId, LocalDateTime createdAt, LocalDateTime modifiedAt) {
+        jdbcTemplate.update("""
+                        INSERT INTO comment (id, comment, created_at, modified_at, logged_user, client_id)
+                        VALUES (?, ?, ?, ?, 'user', ?)
+                        """,
+                id, "comment " + id, Timestamp.valueOf(createdAt),
+                modifiedAt == null ? null : Timestamp.valueOf(modifiedAt), clientId);
+        return id;
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.oldsystem.api;
+
+import com.example.oldsystem.OldSystemDatabaseTest;
+import com.example.oldsystem.dto.ClientDto;
+import com.example.oldsystem.dto.ClientPageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ClientControllerTest extends OldSystemDatabaseTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("Getting client pages. Pages follow client ids, the last one has no cursor")
+    public void testClientPages() throws Exception {
+        List<UUID> clientIds = insertClients(5);
+
+        ClientPageDto first = getPage(null, 2);
+        ClientPageDto second = getPage(first.nextAfter(), 2);
+        ClientPageDto last = getPage(second.nextAfter(), 2);
+
+        Assertions.assertEquals(clientIds.subList(0, 2), guids(first));
+        Assertions.assertEquals(clientIds.get(1), first.nextAfter());
+        Assertions.assertEquals(clientIds.subList(2, 4), guids(second));
+        Assertions.assertEquals(clientIds.get(3), second.nextAfter());
+        Assertions.assertEquals(clientIds.subList(4, 5), guids(last));
+        Assertions.assertNull(last.nextAfter());
+    }
+
+    @Test
+    @DisplayName("Getting client pages. Full last page is followed by an empty one")
+    public void testClientPagesWithFullLastPage() throws Exception {
+        List<UUID> clientIds = insertClients(4);
+
+        ClientPageDto full = getPage(null, 4);
+        ClientPageDto empty = getPage(full.nextAfter(), 4);
+
+        // page size can't tell whether more clients exist, so a full page always has a cursor
+        Assertions.assertEquals(clientIds, guids(full));
+        Assertions.assertEquals(clientIds.get(3), full.nextAfter());
+        Assertions.assertTrue(empty.clients().isEmpty());
+        Assertions.assertNull(empty.nextAfter());
+    }
+
+    @Test
+    @DisplayName("Getting client pages. Cursor past every client and empty table give empty page")
+    public void testClientPagesWithoutClients() throws Exception {
+        ClientPageDto emptyTable = getPage(null, 10);
+        insertClients(2);
+        ClientPageDto pastLast = getPage(new UUID(-1, -1), 10);
+
+        Assertions.assertTrue(emptyTable.clients().isEmpty());
+        Assertions.assertNull(emptyTable.nextAfter());
+        Assertions.assertTrue(pastLast.clients().isEmpty());
+        Assertions.assertNull(pastLast.nextAfter());
+    }
+
+    @Test
+    @DisplayName("Getting client pages. Default page size is used without limit, limits out of range are rejected")
+    public void testClientPageSize() throws Exception {
+        insertClients(3);
+
+        mockMvc.perform(post("/api/v1/clients/page"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.clients.length()").value(3))
+                .andExpect(jsonPath("$.nextAfter").doesNotExist());
+        mockMvc.perform(post("/api/v1/clients/page").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/clients/page").param("limit", "10001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Streaming clients. One json object per line in client id order")
+    public void testStreamClients() throws Exception {
+        List<UUID> clientIds = insertClients(3);
+
+        String body = stream();
+
+        Assertions.assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        Assertions.assertEquals(clientIds.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            ClientDto client = objectMapper.readValue(lines[i], ClientDto.class);
+            Assertions.assertEquals(clientIds.get(i).toString(), client.guid());
+            Assertions.assertEquals("agency", client.agency());
+            Assertions.assertEquals("1980-01-01", client.dob());
+        }
+    }
+
+    @Test
+    @DisplayName("Streaming clients. Empty table gives empty body")
+    public void testStreamClientsWithoutClients() throws Exception {
+        Assertions.assertEquals("", stream());
+    }
+
+    // ids are inserted unordered, the returned list is in the order clients are paged and streamed:
+    // postgres compares uuid bytes unsigned, which matches the hex string order but not UUID.compareTo
+    private List<UUID> insertClients(int count) {
+        long agencyId = insertAgency("agency");
+        List<UUID> clientIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            clientIds.add(insertClient(UUID.randomUUID(), agencyId));
+        }
+        clientIds.sort(Comparator.comparing(UUID::toString));
+        return clientIds;
+    }
+
+    private ClientPageDto getPage(UUID after, int limit) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/clients/page")
+                        .param("after", after == null ? null : after.toString())
+                        .param("limit", String.valueOf(limit)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, ClientPageDto.class);
+    }
+
+    private String stream() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/clients/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private static List<UUID> guids(ClientPageDto page) {
+        return page.clients().stream()
+                .map(client -> UUID.fromString(client.guid()))
+                .toList();
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.oldsystem.api;
+
+import com.example.oldsystem.OldSystemDatabaseTest;
+import com.example.oldsystem.dto.ClientCommentsDto;
+import com.example.oldsystem.dto.CommentBatchRequestDto;
+import com.example.oldsystem.dto.CommentChangesDto;
+import com.example.oldsystem.dto.CommentChangesRequestDto;
+import com.example.oldsystem.dto.CommentResponseDto;
+import com.example.oldsystem.repository.old.CommentJdbcRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class NoteControllerTest extends OldSystemDatabaseTest {
+    private static final LocalDate DATE_FROM = LocalDate.of(2024, 3, 1);
+    private static final LocalDate DATE_TO = LocalDate.of(2024, 3, 31);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CommentJdbcRepository commentJdbcRepository;
+
+    @Test
+    @DisplayName("Getting comments batch. Empty client list gives empty result without error")
+    public void testCommentsBatchWithEmptyClients() throws Exception {
+        UUID clientId = insertClient(UUID.randomUUID(), insertAgency("agency"));
+        insertComment(UUID.randomUUID(), clientId, DATE_FROM.atTime(12, 0), null);
+
+        Assertions.assertTrue(getBatch(List.of()).isEmpty());
+        // controller answers empty list itself, the query must also accept an empty array
+        Assertions.assertTrue(commentJdbcRepository.findByClientsAndCreatedAtBetween(
+                List.of(), null, DATE_FROM.atStartOfDay(), DATE_TO.atTime(23, 59, 59)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Getting comments batch. Unknown clients give empty result")
+    public void testCommentsBatchWithUnknownClients() throws Exception {
+        UUID clientId = insertClient(UUID.randomUUID(), insertAgency("agency"));
+        insertComment(UUID.randomUUID(), clientId, DATE_FROM.atTime(12, 0), null);
+
+        Assertions.assertTrue(getBatch(List.of(UUID.randomUUID(), UUID.randomUUID())).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Getting comments batch. Comments are grouped by known clients, others are absent")
+    public void testCommentsBatchWithMixedClients() throws Exception {
+        long agencyId = insertAgency("agency");
+        UUID firstClientId = insertClient(UUID.randomUUID(), agencyId);
+        UUID secondClientId = insertClient(UUID.randomUUID(), agencyId);
+        UUID clientWithoutCommentsId = insertClient(UUID.randomUUID(), agencyId);
+        UUID notRequestedClientId = insertClient(UUID.randomUUID(), agencyId);
+        UUID firstComment = insertComment(UUID.randomUUID(), firstClientId, DATE_FROM.atTime(10, 0), null);
+        UUID secondComment = insertComment(UUID.randomUUID(), firstClientId, DATE_FROM.atTime(11, 0),
+                DATE_TO.atTime(9, 0));
+        UUID thirdComment = insertComment(UUID.randomUUID(), secondClientId, DATE_TO.atTime(10, 0), null);
+        insertComment(UUID.randomUUID(), notRequestedClientId, DATE_FROM.atTime(10, 0), null);
+
+        List<ClientCommentsDto> batch = getBatch(List.of(firstClientId, UUID.randomUUID(), secondClientId,
+                clientWithoutCommentsId));
+
+        Assertions.assertEquals(Map.of(
+                firstClientId, Set.of(firstComment, secondComment),
+                secondClientId, Set.of(thirdComment)
+        ), commentIdsByClient(batch));
+    }
+
+    @Test
+    @DisplayName("Getting comments batch. Date window includes whole first and last days")
+    public void testCommentsBatchDateWindow() throws Exception {
+        UUID clientId = insertClient(UUID.randomUUID(), insertAgency("agency"));
+        insertComment(UUID.randomUUID(), clientId, DATE_FROM.minusDays(1).atTime(23, 59, 59), null);
+        UUID firstDayStart = insertComment(UUID.randomUUID(), clientId, DATE_FROM.atStartOfDay(), null);
+        UUID lastDayEnd = insertComment(UUID.randomUUID(), clientId, DATE_TO.atTime(23, 59, 59), null);
+        insertComment(UUID.randomUUID(), clientId, DATE_TO.plusDays(1).atStartOfDay(), null);
+        // window is applied to creation time only
+        UUID modifiedLater = insertComment(UUID.randomUUID(), clientId, DATE_TO.atTime(12, 0),
+                DATE_TO.plusDays(5).atTime(12, 0));
+
+        List<ClientCommentsDto> batch = getBatch(List.of(clientId));
+
+        Assertions.assertEquals(Map.of(clientId, Set.of(firstDayStart, lastDayEnd, modifiedLater)),
+                commentIdsByClient(batch));
+    }
+
+    @Test
+    @DisplayName("Getting comments batch. Agency filters clients when set")
+    public void testCommentsBatchWithAgency() throws Exception {
+        UUID clientId = insertClient(UUID.randomUUID(), insertAgency("agency"));
+        UUID otherAgencyClientId = insertClient(UUID.randomUUID(), insertAgency("other agency"));
+        UUID comment = insertComment(UUID.randomUUID(), clientId, DATE_FROM.atTime(10, 0), null);
+        insertComment(UUID.randomUUID(), otherAgencyClientId, DATE_FROM.atTime(10, 0), null);
+
+        List<ClientCommentsDto> batch = postBatch(new CommentBatchRequestDto("agency", DATE_FROM, DATE_TO,
+                List.of(clientId, otherAgencyClientId)));
+
+        Assertions.assertEquals(Map.of(clientId, Set.of(comment)), commentIdsByClient(batch));
+    }
+
+    @Test
+    @DisplayName("Getting comments batch. Missing clients, dates and too many clients are rejected")
+    public void testCommentsBatchValidation() throws Exception {
+        expectBadRequest(new CommentBatchRequestDto(null, DATE_FROM, DATE_TO, null));
+        expectBadRequest(new CommentBatchRequestDto(null, null, DATE_TO, List.of(UUID.randomUUID())));
+        expectBadRequest(new CommentBatchRequestDto(null, DATE_FROM, null, List.of(UUID.randomUUID())));
+        expectBadRequest(new CommentBatchRequestDto(null, DATE_FROM, DATE_TO,
+                Collections.nCopies(1001, UUID.randomUUID())));
+    }
+
+    @Test
+    @DisplayName("Getting comment changes. Comments with the same change time are split between pages without gaps")
+    public void testCommentChangesWithSameChangeTimeAcrossPages() throws Exception {
+        UUID clientId = insertClient(UUID.randomUUID(), insertAgency("agency"));
+        LocalDateTime changedAt = DATE_TO.atTime(12, 0);
+        insertComment(UUID.randomUUID(), clientId, DATE_FROM.minusDays(1).atTime(12, 0), changedAt.plusHours(1));
+        UUID before = insertComment(UUID.randomUUID(), clientId, changedAt.minusHours(1), null);
+        // same change time reached by creation and by modification
+        List<UUID> sameTime = new ArrayList<>(List.of(
+                insertComment(UUID.randomUUID(), clientId, changedAt, null),
+                insertComment(UUID.randomUUID(), clientId, changedAt, null),
+                insertComment(UUID.randomUUID(), clientId, DATE_FROM.atTime(12, 0), changedAt),
+                insertComment(UUID.randomUUID(), clientId, DATE_FROM.atTime(13, 0), changedAt)
+        ));
+        UUID after = insertComment(UUID.randomUUID(), clientId, DATE_FROM.atTime(14, 0), changedAt.plusHours(1));
+        // postgres compares uuid bytes unsigned, which matches the hex string order but not UUID.compareTo
+        sameTime.sort(Comparator.comparing(UUID::toString));
+
+        List<UUID> changed = new ArrayList<>();
+        List<CommentChangesDto> pages = new ArrayList<>();
+        CommentChangesDto page = getChanges(null, null, 3);
+        pages.add(page);
+        while (page.hasMore()) {
+            page.comments().forEach(comment -> changed.add(comment.guid()));
+            page = getChanges(page.lastChangedAt(), page.lastId(), 3);
+            pages.add(page);
+        }
+        page.comments().forEach(comment -> changed.add(comment.guid()));
+
+        List<UUID> expected = new ArrayList<>();
+        expected.add(before);
+        expected.addAll(sameTime);
+        expected.add(after);
+        Assertions.assertEquals(expected, changed);
+        Assertions.assertEquals(3, pages.size());
+        Assertions.assertEquals(changedAt, pages.get(0).lastChangedAt());
+        Assertions.assertEquals(sameTime.get(1), pages.get(0).lastId());
+        Assertions.assertTrue(pages.get(2).comments().isEmpty());
+        Assertions.assertNull(pages.get(2).lastChangedAt());
+        Assertions.assertNull(pages.get(2).lastId());
+    }
+
+    @Test
+    @DisplayName("Getting comment changes. Change time without id starts before every comment of that time")
+    public void testCommentChangesWithoutAfterId() throws Exception {
+        UUID clientId = insertClient(UUID.randomUUID(), insertAgency("agency"));
+        LocalDateTime changedAt = DATE_TO.atTime(12, 0);
+        insertComment(UUID.randomUUID(), clientId, changedAt.minusSeconds(1), null);
+        List<UUID> sameTime = new ArrayList<>(List.of(
+                insertComment(UUID.randomUUID(), clientId, changedAt, null),
+                insertComment(UUID.randomUUID(), clientId, DATE_FROM.atTime(12, 0), changedAt)
+        ));
+        sameTime.sort(Comparator.comparing(UUID::toString));
+
+        CommentChangesDto page = getChanges(changedAt, null, 10);
+
+        Assertions.assertEquals(sameTime, page.comments().stream().map(CommentResponseDto::guid).toList());
+        Assertions.assertFalse(page.hasMore());
+    }
+
+    private List<ClientCommentsDto> getBatch(List<UUID> clientGuids) throws Exception {
+        return postBatch(new CommentBatchRequestDto(null, DATE_FROM, DATE_TO, clientGuids));
+    }
+
+    private List<ClientCommentsDto> postBatch(CommentBatchRequestDto request) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/notes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, new TypeReference<>() {
+        });
+    }
+
+    private CommentChangesDto getChanges(LocalDateTime since, UUID afterId, int limit) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/notes/changes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new CommentChangesRequestDto(since, afterId, DATE_FROM, limit))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, CommentChangesDto.class);
+    }
+
+    private void expectBadRequest(CommentBatchRequestDto request) throws Exception {
+        mockMvc.perform(post("/api/v1/notes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static Map<UUID, Set<UUID>> commentIdsByClient(List<ClientCommentsDto> batch) {
+        return batch.stream().collect(Collectors.toMap(
+                ClientCommentsDto::clientGuid,
+                client -> client.comments().stream().map(CommentResponseDto::guid).collect(Collectors.toSet())
+        ));
+    }
+}